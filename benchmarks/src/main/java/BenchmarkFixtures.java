@@ -0,0 +1,257 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Builds benchmark datasets and exposes each core operation as a Supplier.
+// The core classes live in the default package, which JMH benchmark classes
+// cannot use, so the benchmarks in com.hospital.benchmarks reach them through
+// this class (looked up once per trial, outside the measured code).
+public class BenchmarkFixtures {
+    private static final int SLOTS_PER_DOCTOR = 48; // Half-hour slots across the day
+    private static Path dataDir;
+
+    // Operation names match the benchmark method names
+    public static Supplier<Object> create(String operation, int size) throws IOException {
+        prepareDataDirectory();
+        switch (operation) {
+            case "bookAppointment":
+                return bookOperation(populatedManager(size));
+            case "cancelAppointment":
+                return cancelOperation(populatedManager(size));
+            case "generateAppointmentId": {
+                AppointmentManager manager = populatedManager(size);
+                return manager::generateAppointmentId;
+            }
+            case "generatePatientId": {
+                AppointmentManager manager = populatedManager(size);
+                return manager::generatePatientId;
+            }
+            case "parseCSVLine":
+                return parseOperation(size);
+            case "tokenizeCSVLine":
+                return tokenizeOperation(size);
+            case "loadDoctors":
+                writeDoctors(size);
+                return CSVManager::loadDoctors;
+            case "loadPatients":
+                writePatients(size);
+                return CSVManager::loadPatients;
+            case "loadAppointments":
+                return loadAppointmentsOperation(size);
+            case "saveAllData": {
+                AppointmentManager manager = populatedManager(size);
+                return () -> {
+                    CSVManager.saveAllData(manager);
+                    return manager;
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark operation: " + operation);
+        }
+    }
+
+    // In-memory manager with size active appointments, shared by the threads of
+    // the concurrent benchmarks
+    public static Object manager(int size) throws IOException {
+        prepareDataDirectory();
+        return populatedManager(size);
+    }
+
+    // An operation against its own bench doctor of a shared manager; each
+    // benchmark thread creates one, so threads never contend for a slot
+    public static Supplier<Object> create(String operation, Object manager) {
+        switch (operation) {
+            case "bookAppointment":
+                return bookOperation((AppointmentManager) manager);
+            case "cancelAppointment":
+                return cancelOperation((AppointmentManager) manager);
+            default:
+                throw new IllegalArgumentException("Unknown benchmark operation: " + operation);
+        }
+    }
+
+    // CSVManager reads hospital.data.dir once, so set it before its first use
+    private static synchronized void prepareDataDirectory() throws IOException {
+        if (dataDir != null) {
+            return;
+        }
+        dataDir = Files.createTempDirectory("hospital-jmh");
+        System.setProperty("hospital.data.dir", dataDir.toString());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            File[] files = dataDir.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dataDir.toFile().delete();
+        }));
+    }
+
+    // In-memory manager with size active appointments
+    private static AppointmentManager populatedManager(int size) {
+        AppointmentManager manager = new AppointmentManager(PersistenceMode.MEMORY);
+        manager.setVerbose(false);
+        int doctorCount = Math.max(1, (size + SLOTS_PER_DOCTOR - 1) / SLOTS_PER_DOCTOR);
+        List<Doctor> doctors = new ArrayList<>(doctorCount);
+        for (int d = 0; d < doctorCount; d++) {
+            Doctor doctor = new Doctor(manager.generateDoctorId(), "REG" + d, "Doctor " + d, "Cardiology", slotLabels(SLOTS_PER_DOCTOR), 2500);
+            manager.registerDoctor(doctor);
+            doctors.add(doctor);
+        }
+        for (int a = 0; a < size; a++) {
+            Patient patient = new Patient(manager.generatePatientId(), "Patient " + a, "07" + a, "patient" + a + "@example.com", "Colombo", 30, "None");
+            manager.bookAppointment(patient, doctors.get(a / SLOTS_PER_DOCTOR), slotLabel(a % SLOTS_PER_DOCTOR));
+        }
+        return manager;
+    }
+
+    // A doctor with a full day of one-minute slots, and one patient per slot.
+    // Patient IDs and names include the doctor ID, so bench doctors on one
+    // manager never share patients.
+    private static Doctor benchDoctor(AppointmentManager manager, List<Patient> patients) {
+        String doctorId = manager.generateDoctorId();
+        List<String> slots = new ArrayList<>();
+        for (int s = 0; s < SlotCalendar.SLOTS_PER_DAY; s++) {
+            slots.add(String.format("%02d:%02d", s / 60, s % 60));
+            patients.add(new Patient("BENCH-" + doctorId + "-" + s, "Bench Patient " + doctorId + " " + s, "0700000000", "bench@example.com", "Colombo", 30, "None"));
+        }
+        Doctor doctor = new Doctor(doctorId, "REG-" + doctorId, "Bench Doctor " + doctorId, "General", slots, 1000);
+        manager.registerDoctor(doctor);
+        return doctor;
+    }
+
+    // Books the bench doctor's next slot; once the day is full all bench bookings
+    // are cancelled again (1 in 1440 calls pays for that reset)
+    private static Supplier<Object> bookOperation(AppointmentManager manager) {
+        List<Patient> patients = new ArrayList<>();
+        Doctor doctor = benchDoctor(manager, patients);
+        List<String> slots = doctor.getAvailableTimeSlots();
+        int[] next = { 0 };
+        return () -> {
+            if (next[0] == slots.size()) {
+                for (Patient patient : patients) {
+                    for (Appointment appt : manager.findAppointmentsByPatientId(patient.getPatientId())) {
+                        manager.cancelAppointmentById(appt.getAppointmentId());
+                    }
+                }
+                next[0] = 0;
+            }
+            int i = next[0]++;
+            manager.bookAppointment(patients.get(i), doctor, slots.get(i));
+            return doctor;
+        };
+    }
+
+    // Cancels the bench doctor's next booking; once none are left the whole day
+    // is booked again (1 in 1440 calls pays for that reset)
+    private static Supplier<Object> cancelOperation(AppointmentManager manager) {
+        List<Patient> patients = new ArrayList<>();
+        Doctor doctor = benchDoctor(manager, patients);
+        List<String> slots = doctor.getAvailableTimeSlots();
+        int[] next = { slots.size() };
+        return () -> {
+            if (next[0] == slots.size()) {
+                for (int i = 0; i < slots.size(); i++) {
+                    manager.bookAppointment(patients.get(i), doctor, slots.get(i));
+                }
+                next[0] = 0;
+            }
+            manager.cancelAppointment(patients.get(next[0]++).getName());
+            return doctor;
+        };
+    }
+
+    // Parses rows from a pool of size appointment lines, one per call
+    private static Supplier<Object> parseOperation(int size) {
+        String[] lines = new String[size];
+        for (int a = 0; a < size; a++) {
+            lines[a] = appointmentLine(a, Math.max(1, size / 2));
+        }
+        int[] next = { 0 };
+        return () -> {
+            String line = lines[next[0]];
+            next[0] = next[0] + 1 == lines.length ? 0 : next[0] + 1;
+            return CSVManager.parseCSVLine(line);
+        };
+    }
+
+    // Tokenizes the same rows in place and reads the fields a load keeps
+    private static Supplier<Object> tokenizeOperation(int size) {
+        char[][] lines = new char[size][];
+        for (int a = 0; a < size; a++) {
+            lines[a] = appointmentLine(a, Math.max(1, size / 2)).toCharArray();
+        }
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        int[] next = { 0 };
+        return () -> {
+            char[] line = lines[next[0]];
+            next[0] = next[0] + 1 == lines.length ? 0 : next[0] + 1;
+            tokenizer.reset(line, 0, line.length);
+            return tokenizer.getString(0).length() + tokenizer.getDouble(7);
+        };
+    }
+
+    private static Supplier<Object> loadAppointmentsOperation(int size) throws IOException {
+        int doctorCount = Math.max(1, (size + SLOTS_PER_DOCTOR - 1) / SLOTS_PER_DOCTOR);
+        writeDoctors(doctorCount);
+        writePatients(Math.max(1, size / 2));
+        writeAppointments(size);
+        Map<String, Doctor> doctorsById = CSVManager.indexDoctorsById(CSVManager.loadDoctors());
+        Map<String, Patient> patientsById = CSVManager.indexPatientsById(CSVManager.loadPatients());
+        return () -> CSVManager.loadAppointments(doctorsById, patientsById);
+    }
+
+    private static void writeDoctors(int count) throws IOException {
+        String slots = String.join(";", slotLabels(SLOTS_PER_DOCTOR));
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(dataDir.resolve("doctors.csv").toFile())))) {
+            writer.println("DoctorID,RegistrationNumber,Name,Specialization,ConsultationFee,AvailableTimeSlots");
+            for (int d = 0; d < count; d++) {
+                writer.printf("DOC%07d,REG%07d,Doctor %d,Cardiology,2500.00,\"%s\"%n", d, d, d, slots);
+            }
+        }
+    }
+
+    private static void writePatients(int count) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(dataDir.resolve("patients.csv").toFile())))) {
+            writer.println("PatientID,Name,Mobile,Email,City,Age,MedicalHistory");
+            for (int p = 0; p < count; p++) {
+                writer.printf("PAT%07d,Patient %d,07%08d,patient%d@example.com,Colombo,%d,\"Allergies, asthma\"%n", p, p, p, p, 20 + p % 60);
+            }
+        }
+    }
+
+    private static void writeAppointments(int count) throws IOException {
+        int patients = Math.max(1, count / 2);
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(dataDir.resolve("appointments.csv").toFile())))) {
+            writer.println("AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee");
+            for (int a = 0; a < count; a++) {
+                writer.println(appointmentLine(a, patients));
+            }
+        }
+    }
+
+    private static String appointmentLine(int a, int patients) {
+        int doctor = a / SLOTS_PER_DOCTOR;
+        int patient = a % patients;
+        return String.format("APT%07d,PAT%07d,Patient %d,DOC%07d,Doctor %d,Cardiology,%s,2500.00",
+            a, patient, patient, doctor, doctor, slotLabel(a % SLOTS_PER_DOCTOR));
+    }
+
+    private static List<String> slotLabels(int count) {
+        List<String> slots = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            slots.add(slotLabel(s));
+        }
+        return slots;
+    }
+
+    // Half-hour slots starting at midnight: "12:00AM", "12:30AM", ...
+    private static String slotLabel(int index) {
+        int minutes = index * 30;
+        int hour = minutes / 60;
+        int displayHour = hour % 12 == 0 ? 12 : hour % 12;
+        return String.format("%02d:%02d%s", displayHour, minutes % 60, hour >= 12 ? "PM" : "AM");
+    }
+}
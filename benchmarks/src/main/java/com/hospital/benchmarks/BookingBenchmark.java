@@ -0,0 +1,37 @@
+package com.hospital.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+// AppointmentManager.bookAppointment / cancelAppointment against a manager
+// that already holds size active appointments (in memory, no disk I/O).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingBenchmark {
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private Supplier<Object> book;
+    private Supplier<Object> cancel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        book = Fixtures.operation("bookAppointment", size);
+        cancel = Fixtures.operation("cancelAppointment", size);
+    }
+
+    @Benchmark
+    public Object bookAppointment() {
+        return book.get();
+    }
+
+    @Benchmark
+    public Object cancelAppointment() {
+        return cancel.get();
+    }
+}
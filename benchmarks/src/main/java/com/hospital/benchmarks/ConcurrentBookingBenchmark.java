@@ -0,0 +1,64 @@
+package com.hospital.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+// AppointmentManager.bookAppointment from 1, 2, 4 and all available threads
+// against one shared manager that already holds size active appointments (in
+// memory, no disk I/O). Each thread books the slots of its own doctor, so threads
+// never contend for a slot; on a machine with enough cores, ops/ms should grow
+// about linearly with the thread count.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentBookingBenchmark {
+    @State(Scope.Benchmark)
+    public static class SharedManager {
+        @Param({ "10000", "1000000" })
+        public int size;
+
+        Object manager;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            manager = Fixtures.manager(size);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OwnDoctor {
+        Supplier<Object> book;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedManager shared) throws Exception {
+            book = Fixtures.operation("bookAppointment", shared.manager);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object bookAppointment1Thread(OwnDoctor doctor) {
+        return doctor.book.get();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object bookAppointment2Threads(OwnDoctor doctor) {
+        return doctor.book.get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object bookAppointment4Threads(OwnDoctor doctor) {
+        return doctor.book.get();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object bookAppointmentAllThreads(OwnDoctor doctor) {
+        return doctor.book.get();
+    }
+}
@@ -0,0 +1,62 @@
+package com.hospital.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+// CSVManager.loadDoctors / loadPatients / loadAppointments on files of size rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvLoadBenchmark {
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    @State(Scope.Benchmark)
+    public static class Doctors {
+        Supplier<Object> load;
+
+        @Setup(Level.Trial)
+        public void setUp(CsvLoadBenchmark benchmark) throws Exception {
+            load = Fixtures.operation("loadDoctors", benchmark.size);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Patients {
+        Supplier<Object> load;
+
+        @Setup(Level.Trial)
+        public void setUp(CsvLoadBenchmark benchmark) throws Exception {
+            load = Fixtures.operation("loadPatients", benchmark.size);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Appointments {
+        Supplier<Object> load;
+
+        @Setup(Level.Trial)
+        public void setUp(CsvLoadBenchmark benchmark) throws Exception {
+            load = Fixtures.operation("loadAppointments", benchmark.size);
+        }
+    }
+
+    @Benchmark
+    public Object loadDoctors(Doctors state) {
+        return state.load.get();
+    }
+
+    @Benchmark
+    public Object loadPatients(Patients state) {
+        return state.load.get();
+    }
+
+    @Benchmark
+    public Object loadAppointments(Appointments state) {
+        return state.load.get();
+    }
+}
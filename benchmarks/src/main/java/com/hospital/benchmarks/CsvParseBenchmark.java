@@ -0,0 +1,37 @@
+package com.hospital.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+// CSVManager.parseCSVLine against CsvTokenizer, one appointment row per call
+// from a pool of size rows. Run with -prof gc to compare allocation per row.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvParseBenchmark {
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private Supplier<Object> parse;
+    private Supplier<Object> tokenize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        parse = Fixtures.operation("parseCSVLine", size);
+        tokenize = Fixtures.operation("tokenizeCSVLine", size);
+    }
+
+    @Benchmark
+    public Object parseCSVLine() {
+        return parse.get();
+    }
+
+    @Benchmark
+    public Object tokenizeCSVLine() {
+        return tokenize.get();
+    }
+}
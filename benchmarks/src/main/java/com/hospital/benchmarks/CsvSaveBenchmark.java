@@ -0,0 +1,29 @@
+package com.hospital.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+// CSVManager.saveAllData for a manager holding size active appointments
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvSaveBenchmark {
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private Supplier<Object> save;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        save = Fixtures.operation("saveAllData", size);
+    }
+
+    @Benchmark
+    public Object saveAllData() {
+        return save.get();
+    }
+}
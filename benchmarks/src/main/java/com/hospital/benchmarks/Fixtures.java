@@ -0,0 +1,45 @@
+package com.hospital.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.Supplier;
+
+// Looks up an operation from the default-package BenchmarkFixtures.
+// Reflection is used once per trial; the measured call is a plain Supplier.get().
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Supplier<Object> operation(String name, int size) throws Exception {
+        try {
+            return (Supplier<Object>) Class.forName("BenchmarkFixtures")
+                .getMethod("create", String.class, int.class)
+                .invoke(null, name, size);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    // A populated manager to share between benchmark threads
+    static Object manager(int size) throws Exception {
+        try {
+            return Class.forName("BenchmarkFixtures")
+                .getMethod("manager", int.class)
+                .invoke(null, size);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    // An operation on its own doctor of a shared manager
+    @SuppressWarnings("unchecked")
+    static Supplier<Object> operation(String name, Object manager) throws Exception {
+        try {
+            return (Supplier<Object>) Class.forName("BenchmarkFixtures")
+                .getMethod("create", String.class, Object.class)
+                .invoke(null, name, manager);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.hospital.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+// generateAppointmentId / generatePatientId with size existing appointments.
+// Cost should not depend on size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerationBenchmark {
+    @Param({ "100", "10000", "1000000" })
+    public int size;
+
+    private Supplier<Object> appointmentId;
+    private Supplier<Object> patientId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        appointmentId = Fixtures.operation("generateAppointmentId", size);
+        patientId = Fixtures.operation("generatePatientId", size);
+    }
+
+    @Benchmark
+    public Object generateAppointmentId() {
+        return appointmentId.get();
+    }
+
+    @Benchmark
+    public Object generatePatientId() {
+        return patientId.get();
+    }
+}
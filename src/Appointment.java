@@ -1,14 +1,22 @@
+import java.time.LocalDate;
+
 public class Appointment {
     private String appointmentId;
     private Patient patient;
     private Doctor doctor;
     private String timeSlot;
+    private LocalDate date; // Null for bookings against the doctor's daily slot list
 
     public Appointment(String appointmentId, Patient patient, Doctor doctor, String timeSlot) {
+        this(appointmentId, patient, doctor, timeSlot, null);
+    }
+
+    public Appointment(String appointmentId, Patient patient, Doctor doctor, String timeSlot, LocalDate date) {
         this.appointmentId = appointmentId;
         this.patient = patient;
         this.doctor = doctor;
         this.timeSlot = timeSlot;
+        this.date = date;
     }
 
     public String getAppointmentId() { return appointmentId; }
@@ -24,10 +32,18 @@ public class Appointment {
         return timeSlot; 
     }
 
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public boolean isDated() {
+        return date != null;
+    }
+
     @Override
     public String toString() {
         return "Appointment: " + patient.getName() + " with " + doctor.getName() +
-               " at " + timeSlot + " | Specialization: " + doctor.getSpecialization();
+               " at " + (date != null ? date + " " : "") + timeSlot + " | Specialization: " + doctor.getSpecialization();
     }
 }
 
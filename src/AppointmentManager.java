@@ -1,63 +1,477 @@
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+// Safe to share between front-desk threads. There is no global lock: each
+// doctor's SlotCalendar is an atomic check-and-claim, appointments live in a
+// concurrent store, and cancellation hands a freed slot straight to the next
+// queued patient so no other booking can take it in between. Dated bookings
+// (a doctor's weekly template on a calendar date) are claimed atomically in a
+// BookingIndex, which also answers range queries by doctor and by date.
+// Each public change holds the shared side of changeGate; only a checkpoint
+// takes it exclusively, for as long as it takes to copy the data in memory.
 public class AppointmentManager {
     private List<Doctor> doctors;
-    List<Appointment> appointments; // Package-private for testing
-    Queue<Patient> rescheduleQueue; // Package-private for testing
-    Stack<Appointment> cancellationHistory; // Package-private for testing
+    private final Map<String, Doctor> doctorsById = new ConcurrentHashMap<>();
+    private final DoctorDirectory doctorDirectory = new DoctorDirectory(); // By specialization, with earliest free slots
+    AppointmentStore appointments; // Package-private for testing
+    final BookingIndex datedBookings = new BookingIndex(); // Package-private for testing
+    final PatientRegistry patients = new PatientRegistry(); // Package-private for CSVManager
+    Waitlist rescheduleQueue; // Package-private for testing
+    CancellationHistory cancellationHistory; // Package-private for testing
+    final IdAllocator idAllocator = IdAllocator.fromSystemProperty(); // Package-private for CSVManager
+    private final Object registrationLock = new Object(); // Makes find-or-register atomic
+    private final PersistenceMode persistenceMode;
+    private ChangeJournal journal;
+    private WriteBehindPersister persister; // Saves the CSV files when there is no journal
+    private final ReentrantReadWriteLock changeGate = new ReentrantReadWriteLock(); // Shared by changes, exclusive for checkpoints
+    private final Object checkpointLock = new Object(); // One checkpoint or full save at a time
+    private ScheduledExecutorService checkpointer;
+    private final AtomicInteger dirtyEntities = new AtomicInteger(); // EntityType bits changed since the last save
+    final DataPartitions partitions = DataPartitions.fromSystemProperty(); // Partitions changed since the last save (CSVManager)
+    private volatile boolean verbose = true;
+    static final int CANCELLATION_PAGE_SIZE = 10;
+    private static final int SUGGESTION_LIMIT = 5;
+    private static final int DATED_ALTERNATIVES = 3;    // Free dated slots offered after a conflict
+    private static final int DATED_SEARCH_DAYS = 14;    // How far ahead those are looked for
 
     public AppointmentManager() {
-        doctors = new ArrayList<>();
-        appointments = new ArrayList<>();
-        rescheduleQueue = new LinkedList<>();
-        cancellationHistory = new Stack<>();
+        this(PersistenceMode.fromSystemProperty());
+    }
+
+    public AppointmentManager(PersistenceMode persistenceMode) {
+        this.persistenceMode = persistenceMode;
+        doctors = new CopyOnWriteArrayList<>(); // Registrations are rare, reads are constant
+        appointments = new AppointmentStore();
+        rescheduleQueue = new Waitlist();
+        // Recent cancellations in memory; older ones are archived under data/cancellations/
+        CancellationArchive archive = persistenceMode == PersistenceMode.MEMORY ? null
+            : CancellationArchive.fromSystemProperty(CSVManager.getCancellationArchiveDir());
+        cancellationHistory = new CancellationHistory(CancellationHistory.capacityFromSystemProperty(), archive, this::archivedCancellation);
         
         // Load existing data from CSV files at startup
-        loadDataFromCSV();
+        if (persistenceMode != PersistenceMode.MEMORY) {
+            loadDataFromCSV();
+        }
+        
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            openJournal();
+            startCheckpoints();
+        }
+        if (persistenceMode != PersistenceMode.MEMORY && journal == null) {
+            // Changes are saved in the background, at most maxStalenessMs after they happen
+            long maxStalenessMs = Long.getLong("hospital.persist.maxStalenessMs", 200L);
+            persister = new WriteBehindPersister(this::saveChangedData, maxStalenessMs);
+        }
     }
     
     // Load data from CSV files at startup
     private void loadDataFromCSV() {
+        // A snapshot written after the CSV files holds the same data and loads faster
+        BinarySnapshot snapshot = BinarySnapshot.isEnabled() ? CSVManager.loadSnapshotIfCurrent() : null;
+        if (snapshot != null) {
+            loadDataFromSnapshot(snapshot);
+            return;
+        }
+        
         // Load doctors from CSV
         List<Doctor> loadedDoctors = CSVManager.loadDoctors();
         if (loadedDoctors != null && !loadedDoctors.isEmpty()) {
             doctors.addAll(loadedDoctors);
         }
         
-        // Load patients from CSV
+        // Load patients from CSV; every one stays registered, booked or not
         List<Patient> loadedPatients = CSVManager.loadPatients();
+        patients.addAll(loadedPatients);
+        
+        // Index doctors and patients by ID once for all reference lookups
+        doctorsById.putAll(CSVManager.indexDoctorsById(doctors));
+        Map<String, Patient> patientsById = CSVManager.indexPatientsById(loadedPatients);
         
         // Load appointments from CSV (requires doctors and patients to be loaded first)
-        List<Appointment> loadedAppointments = CSVManager.loadAppointments(doctors, loadedPatients);
+        List<Appointment> loadedAppointments = CSVManager.loadAppointments(doctorsById, patientsById);
         if (loadedAppointments != null && !loadedAppointments.isEmpty()) {
             appointments.addAll(loadedAppointments);
+            claimDatedBookings(loadedAppointments);
         }
         
-        // Load cancellations from CSV
-        Stack<Appointment> loadedCancellations = CSVManager.loadCancellations(doctors, loadedPatients);
+        // Load cancellations from CSV; the ones already archived are skipped
+        List<Appointment> loadedCancellations = CSVManager.loadCancellations(doctorsById, patientsById, cancellationHistory.size());
         if (loadedCancellations != null && !loadedCancellations.isEmpty()) {
             cancellationHistory.addAll(loadedCancellations);
         }
+        
+        // Load the waitlist from CSV, in wait order
+        rescheduleQueue.addAll(CSVManager.loadWaitlist(doctorsById, patientsById));
+        
+        // Indexed once the loaded bookings are in the calendars
+        for (Doctor d : doctors) {
+            doctorDirectory.add(d);
+        }
+        
+        // Apply changes recorded since the CSV files were last written
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            replayJournal(null);
+        }
+        
+        // First start in the partitioned layout: the next save writes every partition
+        if (CSVManager.hasFlatFiles()) {
+            partitions.rewriteAll();
+        }
+        
+        recoverIdCounters();
+    }
+    
+    private void loadDataFromSnapshot(BinarySnapshot snapshot) {
+        doctors.addAll(snapshot.doctors);
+        doctorsById.putAll(CSVManager.indexDoctorsById(doctors));
+        for (Doctor d : doctors) {
+            doctorDirectory.add(d);
+        }
+        patients.addAll(snapshot.patients);
+        appointments.addAll(snapshot.appointments);
+        claimDatedBookings(snapshot.appointments);
+        // Skip cancellations archived after the snapshot was written
+        List<Appointment> cancellations = snapshot.cancellations;
+        long archived = cancellationHistory.size() - snapshot.firstCancellation + 1;
+        if (archived > 0) {
+            cancellations = cancellations.subList((int) Math.min(archived, cancellations.size()), cancellations.size());
+        }
+        cancellationHistory.addAll(cancellations);
+        rescheduleQueue.addAll(snapshot.waitlist);
+        for (Map.Entry<String, Long> entry : snapshot.idCounters.entrySet()) {
+            idAllocator.observe(entry.getKey(), entry.getValue());
+        }
+        if (CSVManager.hasFlatFiles()) {
+            partitions.rewriteAll();
+        }
+        
+        // Only the changes made after the snapshot was taken
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            replayJournal(snapshot);
+        }
+        
+        recoverIdCounters();
+    }
+    
+    // Dated bookings hold their slot in the BookingIndex rather than the daily calendar
+    private void claimDatedBookings(List<Appointment> loaded) {
+        for (Appointment appt : loaded) {
+            if (!appt.isDated()) {
+                continue;
+            }
+            if (!BookingIndex.canClaim(appt)) {
+                System.err.println("Skipping dated appointment whose slot is not a clock time: " + appt.getAppointmentId());
+                appointments.remove(appt);
+            } else if (!datedBookings.claim(appt)) {
+                System.err.println("Skipping double booking of a dated slot: " + appt.getAppointmentId());
+                appointments.remove(appt);
+            }
+        }
+    }
+    
+    // One pass over the loaded data so ID generation never has to scan again.
+    // Every patient referenced by an appointment or the queue is in the registry.
+    private void recoverIdCounters() {
+        CSVManager.loadIdCounters(idAllocator);
+        for (Doctor d : doctors) {
+            idAllocator.observe(d.getDoctorId());
+        }
+        for (Patient p : patients) {
+            idAllocator.observe(p.getPatientId());
+        }
+        for (Appointment appt : appointments) {
+            idAllocator.observe(appt.getAppointmentId());
+        }
+        for (Appointment appt : cancellationHistory) {
+            idAllocator.observe(appt.getAppointmentId());
+        }
+        for (WaitlistEntry entry : rescheduleQueue) {
+            idAllocator.observe(entry.getEntryId());
+        }
+        idAllocator.observe("CAN", cancellationHistory.size());
+    }
+    
+    // Re-apply journal records on top of the data loaded from CSV, or from a
+    // snapshot (skipping the records it already includes)
+    private void replayJournal(BinarySnapshot snapshot) {
+        List<String[]> records = ChangeJournal.readRecords(CSVManager.getJournalFile());
+        ChangeJournal.Header header = ChangeJournal.readHeader(CSVManager.getJournalFile());
+        // A crash between saving the CSV files and emptying the journal leaves
+        // records the files already hold; id_counters.csv says how many
+        ChangeJournal.Position saved = snapshot == null ? CSVManager.loadSavedJournalPosition() : null;
+        if (snapshot != null && snapshot.journalGeneration == header.generation) {
+            records = records.subList((int) Math.min(snapshot.journalRecords, records.size()), records.size());
+        } else if (saved != null && saved.generation == header.generation) {
+            records = records.subList((int) Math.min(saved.records, records.size()), records.size());
+        } else if (snapshot == null && header.afterCheckpoint) {
+            System.err.println(" Warning: data/journal.log continues from a checkpoint in data/snapshot.bin that was not loaded;"
+                               + " changes made before that checkpoint are missing");
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        
+        int applied = 0;
+        for (String[] record : records) {
+            try {
+                switch (record[0]) {
+                    case ChangeJournal.DOCTOR_REGISTERED: {
+                        if (record.length < 7 || doctorsById.containsKey(record[1])) {
+                            continue;
+                        }
+                        Doctor doctor = new Doctor(record[1], record[2], record[3], record[4], splitSlots(record[6]), Double.parseDouble(record[5]));
+                        if (record.length > 7) {
+                            doctor.setWeeklySchedule(WeeklySchedule.parse(record[7]));
+                        }
+                        doctors.add(doctor);
+                        doctorsById.put(doctor.getDoctorId(), doctor);
+                        doctorDirectory.add(doctor);
+                        break;
+                    }
+                    case ChangeJournal.APPOINTMENT_BOOKED: {
+                        // Already in the loaded data, or its slot is held by a later booking
+                        // that is (the record was saved and then cancelled)
+                        if (record.length < 11 || appointments.findById(record[1]) != null) {
+                            continue;
+                        }
+                        Doctor doctor = doctorsById.get(record[9]);
+                        if (doctor == null) {
+                            continue;
+                        }
+                        LocalDate date = record.length > 11 ? CSVManager.parseDate(record[11]) : null;
+                        Appointment appt = new Appointment(record[1], resolveJournalPatient(record, 2), doctor, record[10], date);
+                        if (date == null ? !doctor.bookTimeSlot(record[10])
+                                         : !BookingIndex.canClaim(appt) || !datedBookings.claim(appt)) {
+                            continue;
+                        }
+                        appointments.add(appt);
+                        break;
+                    }
+                    case ChangeJournal.APPOINTMENT_CANCELLED: {
+                        // An appointment that is not active was cancelled before the data was saved
+                        Appointment appt = record.length < 2 ? null : appointments.removeById(record[1]);
+                        if (appt == null) {
+                            continue;
+                        }
+                        cancellationHistory.push(appt);
+                        releaseSlot(appt);
+                        break;
+                    }
+                    case ChangeJournal.PATIENT_REGISTERED: {
+                        if (record.length < 8) {
+                            continue;
+                        }
+                        patients.register(journalPatient(record, 1));
+                        break;
+                    }
+                    case ChangeJournal.PATIENT_QUEUED: {
+                        if (record.length < 8) {
+                            continue;
+                        }
+                        Patient patient = resolveJournalPatient(record, 1);
+                        if (record.length < 13) {
+                            // Written before waitlist preferences: waits for any slot
+                            rescheduleQueue.add(new WaitlistEntry("Q" + patient.getPatientId() + "-" + applied, patient,
+                                                                  null, null, null, System.currentTimeMillis()));
+                        } else {
+                            rescheduleQueue.add(new WaitlistEntry(record[8], patient, record[9], record[10],
+                                                                  splitSlots(record[11]), Long.parseLong(record[12])));
+                        }
+                        break;
+                    }
+                    case ChangeJournal.PATIENT_DEQUEUED: {
+                        // Remove by entry ID: concurrent writers may journal dequeues out of wait order
+                        if (record.length >= 3) {
+                            rescheduleQueue.removeById(record[2]);
+                        } else if (record.length == 2) {
+                            rescheduleQueue.removeFirstForPatient(record[1]);
+                        }
+                        break;
+                    }
+                    default:
+                        continue;
+                }
+                applied++;
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed journal record: " + String.join(",", record));
+            }
+        }
+        System.out.println(" Replayed " + applied + " change(s) from data/journal.log");
+    }
+    
+    // Patient fields are stored inline in journal records starting at offset;
+    // a patient already in the registry keeps its existing record
+    private Patient resolveJournalPatient(String[] record, int offset) {
+        Patient patient = patients.findById(record[offset]);
+        if (patient == null) {
+            patient = journalPatient(record, offset);
+            patients.register(patient);
+        }
+        return patient;
+    }
+    
+    private static Patient journalPatient(String[] record, int offset) {
+        return new Patient(record[offset], record[offset + 1], record[offset + 2], record[offset + 3],
+                           record[offset + 4], Integer.parseInt(record[offset + 5]), record[offset + 6]);
+    }
+    
+    private void openJournal() {
+        CSVManager.ensureDataDirectoryExists();
+        long commitIntervalMs = Long.getLong("hospital.journal.commitIntervalMs", 20L);
+        journal = new ChangeJournal(CSVManager.getJournalFile(), commitIntervalMs);
+        try {
+            journal.open();
+        } catch (IOException e) {
+            System.err.println(" Error opening journal, falling back to CSV saves: " + e.getMessage());
+            journal = null;
+        }
+    }
+    
+    // Checkpoint every -Dhospital.checkpoint.intervalMs (default 5 minutes, 0 = never),
+    // so a restart replays at most that long of the journal
+    private void startCheckpoints() {
+        long intervalMs = Long.getLong("hospital.checkpoint.intervalMs", 300_000L);
+        if (journal == null || !BinarySnapshot.isEnabled() || intervalMs <= 0) {
+            return;
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    // Journal a single change (journal mode only)
+    private void recordChange(String type, String... fields) {
+        if (journal != null) {
+            journal.append(type, fields);
+        }
+    }
+    
+    // Schedule a CSV save once a change is visible; bursts share one save
+    private void markChanged(EntityType... changed) {
+        if (persister != null) {
+            addDirtyEntities(Arrays.asList(changed));
+            persister.markDirty();
+        }
+    }
+    
+    private void addDirtyEntities(Collection<EntityType> changed) {
+        int bits = 0;
+        for (EntityType type : changed) {
+            bits |= type.bit();
+        }
+        final int changedBits = bits;
+        dirtyEntities.getAndUpdate(current -> current | changedBits);
+    }
+    
+    // One background save. What it took is marked changed again if a file could
+    // not be written, so the next save retries it.
+    private boolean saveChangedData() {
+        EnumSet<EntityType> changed = takeDirtyEntities();
+        DataPartitions.Changes changedPartitions = partitions.take();
+        if (CSVManager.saveChangedData(this, changed, changedPartitions)) {
+            return true;
+        }
+        addDirtyEntities(changed);
+        partitions.restore(changedPartitions);
+        return false;
+    }
+    
+    // Entity types changed since the last call; a change made later is saved next time
+    EnumSet<EntityType> takeDirtyEntities() {
+        int bits = dirtyEntities.getAndSet(0);
+        EnumSet<EntityType> changed = EnumSet.noneOf(EntityType.class);
+        for (EntityType type : EntityType.values()) {
+            if ((bits & type.bit()) != 0) {
+                changed.add(type);
+            }
+        }
+        return changed;
+    }
+    
+    // Journal records appended so far (null without a journal); exact while the
+    // change gate is held for writing, as during a full save
+    ChangeJournal.Position journalPosition() {
+        ChangeJournal current = journal;
+        return current == null ? null : current.position();
+    }
+    
+    private static String[] patientFields(Patient patient) {
+        return new String[] {
+            patient.getPatientId(), patient.getName(), patient.getMobile(), patient.getEmail(),
+            patient.getCity(), String.valueOf(patient.getAge()), patient.getMedicalHistory()
+        };
+    }
+    
+    private static String[] waitlistFields(WaitlistEntry entry) {
+        return concat(patientFields(entry.getPatient()), new String[] {
+            entry.getEntryId(), entry.getDoctorId(), entry.getSpecialization(),
+            String.join(";", entry.getAcceptableSlots()), String.valueOf(entry.getEnqueuedAt())
+        });
+    }
+    
+    private static List<String> splitSlots(String joined) {
+        List<String> slots = new ArrayList<>();
+        for (String slot : joined.split(";")) {
+            if (!slot.trim().isEmpty()) {
+                slots.add(slot.trim());
+            }
+        }
+        return slots;
+    }
+    
+    private static String[] concat(String[] head, String[] tail) {
+        String[] result = Arrays.copyOf(head, head.length + tail.length);
+        System.arraycopy(tail, 0, result, head.length, tail.length);
+        return result;
+    }
+
+    // Turn off per-operation console output (batch runs, stress tests)
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
     }
 
     public void registerDoctor(Doctor doctor) {
-        doctors.add(doctor);
-        // Save to CSV after adding doctor
-        CSVManager.saveAllData(this);
+        changeGate.readLock().lock();
+        try {
+            doctors.add(doctor);
+            doctorsById.put(doctor.getDoctorId(), doctor);
+            doctorDirectory.add(doctor);
+            idAllocator.observe(doctor.getDoctorId());
+            // Save after adding doctor
+            recordChange(ChangeJournal.DOCTOR_REGISTERED,
+                doctor.getDoctorId(), doctor.getRegistrationNumber(), doctor.getName(), doctor.getSpecialization(),
+                String.valueOf(doctor.getConsultationFee()), String.join(";", doctor.getAvailableTimeSlots()),
+                doctor.getWeeklySchedule().format());
+            markChanged(EntityType.DOCTORS);
+        } finally {
+            changeGate.readLock().unlock();
+        }
     }
     
     public List<Doctor> getAllDoctors() {
         return new ArrayList<>(doctors);
     }
     
-    public List<Doctor> getAvailableDoctors() {
-        List<Doctor> availableDoctors = new ArrayList<>();
-        for (Doctor d : doctors) {
-            if (!d.getAvailableTimeSlots().isEmpty()) {
-                availableDoctors.add(d);
-            }
-        }
-        return availableDoctors;
+    // Doctors with at least one free slot, in registration order. A read-only view
+    // kept up to date as slots are booked and freed; nothing is scanned or copied.
+    public Collection<Doctor> getAvailableDoctors() {
+        return doctorDirectory.available();
     }
 
     public void displayAvailableDoctors() {
@@ -70,75 +484,392 @@ public class AppointmentManager {
             return;
         }
         
-        for (Doctor d : doctors) {
-            if (!d.getAvailableTimeSlots().isEmpty()) {
-                System.out.println("Dr. " + d);
-                System.out.println("   Registration: " + d.getRegistrationNumber() + " | ID: " + d.getDoctorId());
-                System.out.println("   Available Slots: " + d.getAvailableTimeSlots());
-                System.out.println("   Consultation Fee: Rs. " + String.format("%.2f", d.getConsultationFee()));
-                System.out.println("   " + "-".repeat(55));
-            }
+        for (Doctor d : doctorDirectory.available()) {
+            System.out.println("Dr. " + d);
+            System.out.println("   Registration: " + d.getRegistrationNumber() + " | ID: " + d.getDoctorId());
+            System.out.println("   Available Slots: " + d.getAvailableTimeSlots());
+            System.out.println("   Consultation Fee: Rs. " + String.format("%.2f", d.getConsultationFee()));
+            System.out.println("   " + "-".repeat(55));
         }
     }
 
+    public Doctor findDoctorById(String doctorId) {
+        return doctorsById.get(doctorId);
+    }
+
+    // Doctors of one specialization (case insensitive), in registration order
+    public List<Doctor> findDoctorsBySpecialization(String specialization) {
+        return doctorDirectory.findBySpecialization(specialization);
+    }
+    
+    public List<String> getSpecializations() {
+        return doctorDirectory.specializations();
+    }
+    
+    // Earliest free slot across a specialization's doctors, or null if all are fully booked
+    public DoctorDirectory.FreeSlot findEarliestFreeSlot(String specialization) {
+        return doctorDirectory.findEarliestFreeSlot(specialization);
+    }
+    
     public Doctor findDoctorByName(String name) {
-        for (Doctor d : doctors) {
-            if (d.getName().equalsIgnoreCase(name)) {
-                return d;
+        return doctorDirectory.findByName(name);
+    }
+    
+    // Doctors by name, word prefix or a small typo ("sarah", "dr. sar", "jhon smith"), best first
+    public List<Doctor> searchDoctors(String query, int limit) {
+        return doctorDirectory.searchByName(query, limit);
+    }
+    
+    // Patients by name, word prefix or a small typo, best first
+    public List<Patient> searchPatients(String query, int limit) {
+        return patients.search(query, limit);
+    }
+
+    // Add a patient to the registry (or update the record stored under its ID).
+    // Returns false if this record was already registered.
+    public boolean registerPatient(Patient patient) {
+        changeGate.readLock().lock();
+        try {
+            // Patients may arrive with IDs assigned elsewhere; never hand those out again
+            idAllocator.observe(patient.getPatientId());
+            if (!patients.register(patient)) {
+                return false;
             }
+            recordChange(ChangeJournal.PATIENT_REGISTERED, patientFields(patient));
+            partitions.patientChanged(patient.getPatientId());
+            markChanged(EntityType.PATIENTS);
+            return true;
+        } finally {
+            changeGate.readLock().unlock();
         }
-        return null;
+    }
+    
+    // Return the existing record for a returning patient (same name and the same
+    // mobile number or email), or register a new patient with a fresh ID
+    public Patient findOrRegisterPatient(String name, String mobile, String email, String city, int age, String medicalHistory) {
+        synchronized (registrationLock) {
+            Patient existing = patients.findMatch(name, mobile, email);
+            if (existing != null) {
+                return existing;
+            }
+            Patient patient = new Patient(generatePatientId(), name, mobile, email, city, age, medicalHistory);
+            registerPatient(patient);
+            return patient;
+        }
+    }
+    
+    // Registered patient who is the same person, or null
+    public Patient findMatchingPatient(String name, String mobile, String email) {
+        return patients.findMatch(name, mobile, email);
+    }
+    
+    public Patient findPatientById(String patientId) {
+        return patients.findById(patientId);
+    }
+    
+    public List<Patient> findPatientsByMobile(String mobile) {
+        return patients.findByMobile(mobile);
+    }
+    
+    public List<Patient> findPatientsByEmail(String email) {
+        return patients.findByEmail(email);
+    }
+    
+    public List<Patient> findPatientsByName(String name) {
+        return patients.findByName(name);
+    }
+    
+    public int getPatientCount() {
+        return patients.size();
     }
 
     public void bookAppointment(Patient patient, Doctor doctor, String timeSlot) {
-        if (doctor.isAvailable(timeSlot)) {
-            String appointmentId = generateAppointmentId();
-            Appointment appt = new Appointment(appointmentId, patient, doctor, timeSlot);
-            appointments.add(appt);
-            doctor.bookTimeSlot(timeSlot);
+        changeGate.readLock().lock();
+        try {
+            registerPatient(patient);
+            // Atomic check-and-claim on this doctor's calendar
+            if (doctor.bookTimeSlot(timeSlot)) {
+                confirmBooking(patient, doctor, timeSlot);
+            } else {
+                if (verbose) {
+                    System.out.println("CONFLICT: Time slot " + timeSlot + " is not available!");
+                    System.out.println("   Adding " + patient.getName() + " to reschedule queue for Dr. " + doctor.getName() + "...");
+                }
+                // Waits for the next slot this doctor frees up
+                joinWaitlist(patient, doctor, null, Collections.emptyList());
+                if (verbose) {
+                    System.out.println("   Queue Position: " + rescheduleQueue.size());
+                }
+            }
+        } finally {
+            changeGate.readLock().unlock();
+        }
+    }
+    
+    // Put a patient on the waitlist for a doctor, or (doctor null) any doctor of a
+    // specialization, or (both null) any doctor at all. acceptableSlots empty = any slot.
+    // When a matching slot is freed the longest-waiting eligible patient gets it.
+    public WaitlistEntry joinWaitlist(Patient patient, Doctor doctor, String specialization, List<String> acceptableSlots) {
+        changeGate.readLock().lock();
+        try {
+            registerPatient(patient);
+            String doctorId = null;
+            if (doctor != null) {
+                doctorId = doctor.getDoctorId();
+                specialization = doctor.getSpecialization(); // Kept in case the doctor's record is ever lost
+            }
+            WaitlistEntry entry = new WaitlistEntry(idAllocator.next("WLT"), patient, doctorId,
+                                                    specialization, acceptableSlots, System.currentTimeMillis());
+            // Journal before the entry becomes visible to cancellations
+            recordChange(ChangeJournal.PATIENT_QUEUED, waitlistFields(entry));
+            rescheduleQueue.add(entry);
+            markChanged(EntityType.WAITLIST);
+            return entry;
+        } finally {
+            changeGate.readLock().unlock();
+        }
+    }
+    
+    // Patients still waiting, longest-waiting first
+    public List<WaitlistEntry> getWaitlist() {
+        return new ArrayList<>(rescheduleQueue);
+    }
+    
+    // Create the appointment for a slot this thread has already claimed
+    private void confirmBooking(Patient patient, Doctor doctor, String timeSlot) {
+        confirmBooking(new Appointment(generateAppointmentId(), patient, doctor, timeSlot));
+    }
+    
+    private void confirmBooking(Appointment appt) {
+        Patient patient = appt.getPatient();
+        Doctor doctor = appt.getDoctor();
+        String[] slotFields = appt.isDated()
+            ? new String[] { doctor.getDoctorId(), appt.getTimeSlot(), appt.getDate().toString() }
+            : new String[] { doctor.getDoctorId(), appt.getTimeSlot() };
+        // Save before the appointment becomes visible, so a concurrent
+        // cancellation can never be journalled ahead of its booking
+        recordChange(ChangeJournal.APPOINTMENT_BOOKED,
+            concat(concat(new String[] { appt.getAppointmentId() }, patientFields(patient)), slotFields));
+        appointments.add(appt);
+        partitions.appointmentsChanged(doctor.getDoctorId());
+        markChanged(EntityType.APPOINTMENTS, EntityType.DOCTORS);
+        if (verbose) {
             System.out.println("SUCCESS: Appointment booked for " + patient.getName());
-            System.out.println("   Appointment ID: " + appointmentId);
+            System.out.println("   Appointment ID: " + appt.getAppointmentId());
             System.out.println("   Doctor: " + doctor.getName() + " (" + doctor.getSpecialization() + ")");
-            System.out.println("   Time: " + timeSlot);
+            System.out.println("   " + (appt.isDated() ? "Date: " + appt.getDate() + " | " : "") + "Time: " + appt.getTimeSlot());
             System.out.println("   Fee: Rs. " + String.format("%.2f", doctor.getConsultationFee()));
-            // Save to CSV after booking appointment
-            CSVManager.saveAllData(this);
-        } else {
-            System.out.println("CONFLICT: Time slot " + timeSlot + " is not available!");
-            System.out.println("   Adding " + patient.getName() + " to reschedule queue...");
-            rescheduleQueue.offer(patient);
-            System.out.println("   Queue Position: " + rescheduleQueue.size());
         }
     }
+    
+    // Book a slot of the doctor's weekly template on a calendar date. Returns false
+    // if the doctor does not offer that slot that day, the date is past, or the
+    // slot is taken; dated bookings are not waitlisted, the next free ones are shown.
+    public boolean bookDatedAppointment(Patient patient, Doctor doctor, LocalDate date, String timeSlot) {
+        changeGate.readLock().lock();
+        try {
+            registerPatient(patient);
+            WeeklySchedule schedule = doctor.getWeeklySchedule();
+            int minute = SlotCalendar.parseSlot(timeSlot);
+            if (date.isBefore(LocalDate.now()) || minute < 0 || !schedule.offers(date.getDayOfWeek(), minute)) {
+                if (verbose) {
+                    System.out.println("ERROR: Dr. " + doctor.getName() + " has no " + timeSlot + " slot on "
+                                       + date.getDayOfWeek() + " " + date + ".");
+                }
+                return false;
+            }
+            // Same label as the template, so the daily and dated views spell it alike
+            Appointment appt = new Appointment(generateAppointmentId(), patient, doctor, schedule.labelAt(minute), date);
+            if (!datedBookings.claim(appt)) {
+                if (verbose) {
+                    System.out.println("CONFLICT: " + date + " " + timeSlot + " is not available!");
+                    List<DatedSlot> alternatives = findFreeDatedSlots(doctor, date, date.plusDays(DATED_SEARCH_DAYS - 1), DATED_ALTERNATIVES);
+                    if (!alternatives.isEmpty()) {
+                        System.out.println("   Next free slots with Dr. " + doctor.getName() + ": " + alternatives);
+                    }
+                }
+                return false;
+            }
+            confirmBooking(appt);
+            return true;
+        } finally {
+            changeGate.readLock().unlock();
+        }
+    }
+    
+    // Free slots of a doctor's weekly template from one date to another (both
+    // inclusive), in time order, at most limit of them. Only the bookings in the
+    // range are read; unbooked dated slots are never stored.
+    public List<DatedSlot> findFreeDatedSlots(Doctor doctor, LocalDate from, LocalDate to, int limit) {
+        List<DatedSlot> free = new ArrayList<>();
+        WeeklySchedule schedule = doctor.getWeeklySchedule();
+        LocalDate today = LocalDate.now();
+        if (from.isBefore(today)) {
+            from = today;
+        }
+        if (schedule.isEmpty() || from.isAfter(to)) {
+            return free;
+        }
+        Set<Long> booked = datedBookings.forDoctor(doctor.getDoctorId(), from, to).keySet();
+        for (LocalDate date = from; !date.isAfter(to) && free.size() < limit; date = date.plusDays(1)) {
+            DayOfWeek day = date.getDayOfWeek();
+            for (int minute : schedule.minutesOn(day)) {
+                if (!booked.contains(DatedSlot.key(date, minute))) {
+                    free.add(new DatedSlot(date, minute, schedule.labelAt(minute)));
+                    if (free.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return free;
+    }
+    
+    // A doctor's dated appointments from one date to another (both inclusive), in time order
+    public List<Appointment> getDatedSchedule(String doctorId, LocalDate from, LocalDate to) {
+        return new ArrayList<>(datedBookings.forDoctor(doctorId, from, to).values());
+    }
+    
+    // Every dated appointment on a date, in time order and then by doctor ID
+    public List<Appointment> getAppointmentsOn(LocalDate date) {
+        return datedBookings.onDate(date);
+    }
+    
+    public void displayAppointmentsOn(LocalDate date) {
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println(" APPOINTMENTS ON " + date.getDayOfWeek() + " " + date);
+        System.out.println("=".repeat(60));
+        
+        List<Appointment> booked = datedBookings.onDate(date);
+        if (booked.isEmpty()) {
+            System.out.println(" No appointments booked for " + date + ".");
+            return;
+        }
+        for (Appointment appt : booked) {
+            Patient patient = appt.getPatient();
+            System.out.println("    " + appt.getTimeSlot() + "  Dr. " + appt.getDoctor().getName() + " | "
+                               + patient.getName() + " (ID: " + patient.getPatientId() + ")");
+            System.out.println("       Appointment ID: " + appt.getAppointmentId());
+        }
+        System.out.println(" Total Appointments: " + booked.size());
+    }
 
+    // Cancel the earliest booked appointment for a patient name
     public void cancelAppointment(String patientName) {
-        System.out.println("\n PROCESSING CANCELLATION...");
-        Appointment toRemove = null;
-        for (Appointment appt : appointments) {
-            if (appt.getPatient().getName().equalsIgnoreCase(patientName)) {
-                toRemove = appt;
-                break;
+        changeGate.readLock().lock();
+        try {
+            if (verbose) {
+                System.out.println("\n PROCESSING CANCELLATION...");
+            }
+            // Another thread may cancel the same appointment first; then try the next match
+            Appointment toRemove;
+            while ((toRemove = appointments.findFirstByPatientName(patientName)) != null) {
+                if (cancel(toRemove)) {
+                    return;
+                }
             }
+            if (verbose) {
+                System.out.println(" ERROR: No appointment found for patient '" + patientName + "'");
+                printAppointmentSuggestions(patientName);
+            }
+        } finally {
+            changeGate.readLock().unlock();
         }
-        if (toRemove != null) {
-            appointments.remove(toRemove);
-            cancellationHistory.push(toRemove);
-            // Free up the time slot
-            toRemove.getDoctor().freeTimeSlot(toRemove.getTimeSlot());
+    }
+    
+    // Close matches that do have appointments, so the desk can cancel by appointment ID
+    private void printAppointmentSuggestions(String patientName) {
+        boolean first = true;
+        for (Patient patient : patients.search(patientName, SUGGESTION_LIMIT)) {
+            for (Appointment appt : appointments.findByPatientId(patient.getPatientId())) {
+                if (first) {
+                    System.out.println(" Did you mean:");
+                    first = false;
+                }
+                System.out.println("    " + patient.getName() + " (ID: " + patient.getPatientId() + ") - Appointment ID: "
+                                   + appt.getAppointmentId() + " with Dr. " + appt.getDoctor().getName() + " at " + (appt.isDated() ? appt.getDate() + " " : "") + appt.getTimeSlot());
+            }
+        }
+    }
+    
+    // Cancel one specific appointment
+    public void cancelAppointmentById(String appointmentId) {
+        changeGate.readLock().lock();
+        try {
+            if (verbose) {
+                System.out.println("\n PROCESSING CANCELLATION...");
+            }
+            Appointment toRemove = appointments.findById(appointmentId);
+            if (toRemove == null || !cancel(toRemove)) {
+                if (verbose) {
+                    System.out.println(" ERROR: No appointment found with ID '" + appointmentId + "'");
+                }
+            }
+        } finally {
+            changeGate.readLock().unlock();
+        }
+    }
+    
+    public Appointment findAppointmentById(String appointmentId) {
+        return appointments.findById(appointmentId);
+    }
+    
+    public Collection<Appointment> findAppointmentsByPatientId(String patientId) {
+        return appointments.findByPatientId(patientId);
+    }
+    
+    // Returns false if another thread already cancelled this appointment
+    private boolean cancel(Appointment toRemove) {
+        if (!appointments.remove(toRemove)) {
+            return false;
+        }
+        cancellationHistory.push(toRemove);
+        idAllocator.observe("CAN", cancellationHistory.size());
+        Doctor doctor = toRemove.getDoctor();
+        partitions.appointmentsChanged(doctor.getDoctorId());
+        String timeSlot = toRemove.getTimeSlot();
+        // Save after cancellation, before the slot can be reused
+        recordChange(ChangeJournal.APPOINTMENT_CANCELLED, toRemove.getAppointmentId());
+        if (verbose) {
             System.out.println(" CANCELLED: " + toRemove.getPatient().getName() + "'s appointment");
-            System.out.println("    Freed slot: " + toRemove.getTimeSlot() + " with Dr. " + toRemove.getDoctor().getName());
-            
-            if (!rescheduleQueue.isEmpty()) {
-                Patient next = rescheduleQueue.poll();
+            System.out.println("    Freed slot: " + (toRemove.isDated() ? toRemove.getDate() + " " : "") + timeSlot
+                               + " with Dr. " + doctor.getName());
+        }
+        
+        // The waitlist is for the daily slot list; a dated slot simply opens up again
+        if (toRemove.isDated()) {
+            datedBookings.release(toRemove);
+            markChanged(EntityType.APPOINTMENTS, EntityType.CANCELLATIONS);
+            return true;
+        }
+        
+        // The longest-waiting patient who accepts this doctor and slot, if any
+        WaitlistEntry next = rescheduleQueue.pollBestMatch(doctor, timeSlot);
+        if (next != null) {
+            recordChange(ChangeJournal.PATIENT_DEQUEUED, next.getPatient().getPatientId(), next.getEntryId());
+            if (verbose) {
                 System.out.println(" AUTO-RESCHEDULING from queue...");
-                bookAppointment(next, toRemove.getDoctor(), toRemove.getTimeSlot());
-            } else {
-                System.out.println(" No patients in reschedule queue. Slot remains open.");
             }
-            // Save to CSV after cancellation
-            CSVManager.saveAllData(this);
+            // Hand the slot over directly; it is never free for another booking to take
+            confirmBooking(next.getPatient(), doctor, timeSlot);
+            markChanged(EntityType.WAITLIST);
         } else {
-            System.out.println(" ERROR: No appointment found for patient '" + patientName + "'");
+            doctor.freeTimeSlot(timeSlot);
+            if (verbose) {
+                System.out.println(" No matching patients in reschedule queue. Slot remains open.");
+            }
+        }
+        // One save covers the cancellation and any automatic rebooking
+        markChanged(EntityType.APPOINTMENTS, EntityType.CANCELLATIONS, EntityType.DOCTORS);
+        return true;
+    }
+
+    // Give a cancelled appointment's slot back (journal replay; no waitlist handoff)
+    private void releaseSlot(Appointment appt) {
+        if (appt.isDated()) {
+            datedBookings.release(appt);
+        } else {
+            appt.getDoctor().freeTimeSlot(appt.getTimeSlot());
         }
     }
 
@@ -147,36 +878,18 @@ public class AppointmentManager {
         System.out.println(" CURRENT APPOINTMENTS SCHEDULE");
         System.out.println("=".repeat(60));
         
-        if (appointments.isEmpty()) {
+        // One snapshot for the whole report, so the listing and the total agree
+        // even while other desks book and cancel
+        ScheduleSnapshot schedule = appointments.snapshot();
+        if (schedule.isEmpty()) {
             System.out.println(" No appointments scheduled yet.");
             return;
         }
         
-        // Group appointments by doctor
-        Map<String, List<Appointment>> appointmentsByDoctor = new HashMap<>();
-        for (Appointment appt : appointments) {
-            String doctorKey = appt.getDoctor().getName();
-            appointmentsByDoctor.computeIfAbsent(doctorKey, k -> new ArrayList<>()).add(appt);
-        }
-        
+        // Each doctor's appointments are already grouped and sorted by time
         int totalAppointments = 0;
-        for (String doctorName : appointmentsByDoctor.keySet()) {
-            List<Appointment> doctorAppts = appointmentsByDoctor.get(doctorName);
-            Doctor doctor = doctorAppts.get(0).getDoctor();
-            
-            System.out.println(" Dr. " + doctorName + " (" + doctor.getSpecialization() + ")");
-            System.out.println("    Fee: Rs. " + String.format("%.2f", doctor.getConsultationFee()));
-            
-            for (Appointment appt : doctorAppts) {
-                Patient patient = appt.getPatient();
-                System.out.println("    " + appt.getTimeSlot() + "  " + patient.getName() + 
-                                 " (Age: " + patient.getAge() + ", " + patient.getCity() + ")");
-                System.out.println("       Appointment ID: " + appt.getAppointmentId() + " | Patient ID: " + patient.getPatientId());
-                System.out.println("       " + patient.getMobile() + " |  " + patient.getEmail());
-                System.out.println("       Medical History: " + patient.getMedicalHistory());
-                totalAppointments++;
-            }
-            System.out.println("   " + "-".repeat(55));
+        for (String doctorId : schedule.doctorIds()) {
+            totalAppointments += printDoctorSchedule(schedule.forDoctor(doctorId));
         }
         
         System.out.println(" Total Appointments: " + totalAppointments);
@@ -185,24 +898,72 @@ public class AppointmentManager {
         }
     }
     
+    // One doctor's appointments in time order, read straight from that doctor's
+    // index entry without scanning or copying anyone's (read-only; later
+    // bookings and cancellations do not change it)
+    public List<Appointment> getDoctorSchedule(String doctorId) {
+        return appointments.findByDoctorId(doctorId);
+    }
+    
+    public void displayDoctorSchedule(String doctorId) {
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println(" DOCTOR SCHEDULE");
+        System.out.println("=".repeat(60));
+        
+        List<Appointment> schedule = appointments.findByDoctorId(doctorId);
+        if (schedule.isEmpty()) {
+            System.out.println(" No appointments scheduled for doctor " + doctorId + ".");
+            return;
+        }
+        System.out.println(" Total Appointments: " + printDoctorSchedule(schedule));
+    }
+    
+    // Print one doctor's appointments (all for the same doctor); returns how many
+    private int printDoctorSchedule(List<Appointment> doctorAppts) {
+        if (doctorAppts.isEmpty()) {
+            return 0;
+        }
+        Doctor doctor = doctorAppts.get(0).getDoctor();
+        
+        System.out.println(" Dr. " + doctor.getName() + " (" + doctor.getSpecialization() + ") | ID: " + doctor.getDoctorId());
+        System.out.println("    Fee: Rs. " + String.format("%.2f", doctor.getConsultationFee()));
+        
+        for (Appointment appt : doctorAppts) {
+            Patient patient = appt.getPatient();
+            System.out.println("    " + (appt.isDated() ? appt.getDate() + " " : "") + appt.getTimeSlot() + "  " + patient.getName() + 
+                             " (Age: " + patient.getAge() + ", " + patient.getCity() + ")");
+            System.out.println("       Appointment ID: " + appt.getAppointmentId() + " | Patient ID: " + patient.getPatientId());
+            System.out.println("       " + patient.getMobile() + " |  " + patient.getEmail());
+            System.out.println("       Medical History: " + patient.getMedicalHistory());
+        }
+        System.out.println("   " + "-".repeat(55));
+        return doctorAppts.size();
+    }
+    
     public void displayCancellationHistory() {
+        displayCancellationHistory(1, CANCELLATION_PAGE_SIZE);
+    }
+    
+    // One page of cancellations, most recent first; returns true if older ones follow
+    public boolean displayCancellationHistory(int page, int pageSize) {
         System.out.println("\n" + "=".repeat(60));
         System.out.println(" CANCELLATION HISTORY");
         System.out.println("=".repeat(60));
         
         if (cancellationHistory.isEmpty()) {
             System.out.println(" No cancellations recorded yet.");
-            return;
+            return false;
         }
         
-        System.out.println(" Total Cancellations: " + cancellationHistory.size());
+        int total = cancellationHistory.size();
+        int pages = (total + pageSize - 1) / pageSize;
+        System.out.println(" Total Cancellations: " + total + " | Page " + page + " of " + pages);
         System.out.println("-".repeat(60));
         
-        // Display cancellations in reverse order (most recent first)
-        List<Appointment> reversedHistory = new ArrayList<>(cancellationHistory);
-        Collections.reverse(reversedHistory);
+        // Only this page is read, from memory or one archive segment
+        List<Appointment> pageEntries = cancellationHistory.newest((long) (page - 1) * pageSize, pageSize);
         
-        for (Appointment cancelledAppt : reversedHistory) {
+        for (Appointment cancelledAppt : pageEntries) {
             Patient patient = cancelledAppt.getPatient();
             Doctor doctor = cancelledAppt.getDoctor();
             
@@ -210,13 +971,45 @@ public class AppointmentManager {
             System.out.println("    Appointment ID: " + cancelledAppt.getAppointmentId());
             System.out.println("    Patient: " + patient.getName() + " (ID: " + patient.getPatientId() + ")");
             System.out.println("    Doctor: Dr. " + doctor.getName() + " (" + doctor.getSpecialization() + ")");
-            System.out.println("    Time Slot: " + cancelledAppt.getTimeSlot());
+            System.out.println("    Time Slot: " + (cancelledAppt.isDated() ? cancelledAppt.getDate() + " " : "") + cancelledAppt.getTimeSlot());
             System.out.println("    Contact: " + patient.getMobile() + " |  " + patient.getEmail());
             System.out.println("    Medical History: " + patient.getMedicalHistory());
             System.out.println("   " + "-".repeat(55));
         }
         
-        System.out.println(" Total Cancellations: " + cancellationHistory.size());
+        System.out.println(" Total Cancellations: " + total + " | Page " + page + " of " + pages);
+        return page < pages && pageEntries.size() == pageSize;
+    }
+    
+    // An archived cancellations.csv row as an Appointment. Doctors and patients
+    // still registered are reused; otherwise the row's own details are shown.
+    private Appointment archivedCancellation(String[] row) {
+        if (row.length < 10) {
+            return null;
+        }
+        Doctor doctor = doctorsById.get(row[4]);
+        if (doctor == null) {
+            doctor = new Doctor(row[4], "", row[5], row[6], Collections.emptyList(), parseFee(row[8]));
+        }
+        Patient patient = patients.findById(row[2]);
+        if (patient == null) {
+            patient = new Patient(row[2], row[3], "", "", "", 0, "");
+        }
+        LocalDate date = null;
+        try {
+            date = row.length > 10 ? CSVManager.parseDate(row[10]) : null;
+        } catch (NumberFormatException e) {
+            // Shown without its date; archived rows are only ever displayed
+        }
+        return new Appointment(row[1], patient, doctor, row[7], date);
+    }
+    
+    private static double parseFee(String fee) {
+        try {
+            return Double.parseDouble(fee);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
     
     public void displaySystemStatus() {
@@ -224,22 +1017,130 @@ public class AppointmentManager {
         System.out.println(" HOSPITAL APPOINTMENT SYSTEM STATUS");
         System.out.println("=".repeat(60));
         System.out.println(" Total Doctors: " + doctors.size());
-        System.out.println(" Active Appointments: " + appointments.size());
+        System.out.println(" Registered Patients: " + patients.size());
+        System.out.println(" Active Appointments: " + appointments.snapshot().size());
         System.out.println(" Reschedule Queue: " + rescheduleQueue.size());
         System.out.println(" Cancellation History: " + cancellationHistory.size());
         System.out.println("=".repeat(60));
     }
     
     public void saveAllDataToCSV() {
-        CSVManager.saveAllData(this);
+        saveAllDataToCSV(false);
     }
     
+    // Changes wait until the files are written, so the journal can then be emptied
     public void saveAllDataToCSV(boolean verbose) {
-        CSVManager.saveAllData(this, verbose);
+        boolean saved;
+        synchronized (checkpointLock) {
+            changeGate.writeLock().lock();
+            try {
+                takeDirtyEntities(); // Everything is about to be written
+                saved = CSVManager.saveAllData(this, verbose);
+                if (saved && BinarySnapshot.isEnabled()) {
+                    CSVManager.saveSnapshot(captureImage(), verbose);
+                }
+                // The CSV files now contain every journalled change; after a failed
+                // save the journal keeps them
+                if (saved && journal != null) {
+                    journal.truncate();
+                }
+            } finally {
+                changeGate.writeLock().unlock();
+            }
+        }
+        if (!saved) {
+            // CSV mode: the background saver writes everything again
+            partitions.rewriteAll();
+            markChanged(EntityType.values());
+        }
+    }
+    
+    // Journal mode: write data/snapshot.bin as an image of one moment, then drop
+    // the journal records it includes, so a restart loads the snapshot and replays
+    // only the changes made after it. Changes wait only while the data is copied
+    // in memory, not while the snapshot is written.
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            ChangeJournal current = journal;
+            if (current == null || !BinarySnapshot.isEnabled() || current.position().records == 0) {
+                return; // Nothing recorded since the last checkpoint
+            }
+            try {
+                // Old cancellations go to the archive first, so the snapshot holds at most
+                // the ring and one partial segment however long the system runs
+                CSVManager.archiveCancellations(cancellationHistory, idAllocator);
+                BinarySnapshot image;
+                changeGate.writeLock().lock();
+                try {
+                    image = captureImage();
+                } finally {
+                    changeGate.writeLock().unlock();
+                }
+                if (CSVManager.saveSnapshot(image, false)) {
+                    current.dropBefore(new ChangeJournal.Position(image.journalGeneration, image.journalRecords));
+                }
+            } catch (RuntimeException e) {
+                System.err.println(" Error writing checkpoint: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Call with changeGate held exclusively, so the image and journal position agree
+    private BinarySnapshot captureImage() {
+        BinarySnapshot image = BinarySnapshot.capture(this);
+        if (journal != null) {
+            ChangeJournal.Position position = journal.position();
+            image.journalGeneration = position.generation;
+            image.journalRecords = position.records;
+        }
+        return image;
+    }
+    
+    // Write every pending change now instead of waiting for the background save
+    public void flush() {
+        if (persister != null) {
+            persister.flush();
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+    
+    // Number of background CSV saves written so far
+    public long getSaveCount() {
+        return persister == null ? 0 : persister.getSaveCount();
+    }
+    
+    // Make all pending changes durable before the application exits, and leave a
+    // snapshot behind so the next start does not have to parse the CSV files
+    public void shutdown() {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            try {
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES); // A checkpoint in progress
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            checkpointer = null;
+        }
+        if (persister != null) {
+            persister.close();
+        }
+        if (persistenceMode != PersistenceMode.MEMORY && BinarySnapshot.isEnabled()) {
+            if (journal != null) {
+                saveAllDataToCSV(); // Fold the journal into the CSV files first
+            } else {
+                CSVManager.saveSnapshot(this, false);
+            }
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
     }
     
     public void showCSVFileLocations() {
-        CSVManager.saveAllData(this, true);
+        saveAllDataToCSV(true); // Also empties the journal, whose records the CSV files now hold
         CSVManager.showFilePaths();
     }
     
@@ -259,19 +1160,7 @@ public class AppointmentManager {
     
     // Generate unique doctor ID automatically
     public String generateDoctorId() {
-        int maxId = 0;
-        for (Doctor doctor : doctors) {
-            String id = doctor.getDoctorId();
-            if (id.startsWith("DOC")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    maxId = Math.max(maxId, num);
-                } catch (NumberFormatException e) {
-                    // Ignore non-numeric IDs
-                }
-            }
-        }
-        return String.format("DOC%03d", maxId + 1);
+        return idAllocator.next("DOC");
     }
     
     // Check if registration number already exists
@@ -286,72 +1175,16 @@ public class AppointmentManager {
     
     // Generate unique patient ID automatically
     public String generatePatientId() {
-        int maxId = 0;
-        Set<Patient> allPatients = new HashSet<>();
-        
-        // Collect all patients from appointments
-        for (Appointment appointment : appointments) {
-            allPatients.add(appointment.getPatient());
-        }
-        
-        // Collect all patients from reschedule queue
-        allPatients.addAll(rescheduleQueue);
-        
-        // Collect all patients from cancellation history
-        for (Appointment cancelledAppointment : cancellationHistory) {
-            allPatients.add(cancelledAppointment.getPatient());
-        }
-        
-        // Find the highest existing patient ID number
-        for (Patient patient : allPatients) {
-            String id = patient.getPatientId();
-            if (id != null && id.startsWith("PAT")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    maxId = Math.max(maxId, num);
-                } catch (NumberFormatException e) {
-                    // Ignore non-numeric IDs
-                }
-            }
-        }
-        return String.format("PAT%03d", maxId + 1);
+        return idAllocator.next("PAT");
     }
     
     // Generate unique appointment ID automatically
     public String generateAppointmentId() {
-        int maxId = 0;
-        
-        // Check all current appointments
-        for (Appointment appointment : appointments) {
-            String id = appointment.getAppointmentId();
-            if (id != null && id.startsWith("APT")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    maxId = Math.max(maxId, num);
-                } catch (NumberFormatException e) {
-                    // Ignore non-numeric IDs
-                }
-            }
-        }
-        
-        // Check cancellation history for higher IDs
-        for (Appointment appointment : cancellationHistory) {
-            String id = appointment.getAppointmentId();
-            if (id != null && id.startsWith("APT")) {
-                try {
-                    int num = Integer.parseInt(id.substring(3));
-                    maxId = Math.max(maxId, num);
-                } catch (NumberFormatException e) {
-                    // Ignore non-numeric IDs
-                }
-            }
-        }
-        
-        return String.format("APT%03d", maxId + 1);
+        return idAllocator.next("APT");
     }
     
     // Generate unique cancellation ID automatically
     public String generateCancellationId() {
-        return String.format("CAN%03d", cancellationHistory.size() + 1);
+        return idAllocator.next("CAN");
     }
 }
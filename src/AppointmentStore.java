@@ -0,0 +1,245 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Active appointments indexed by appointment ID, patient ID and normalized
+// patient name. Lookup and removal by any of these keys is O(1). Each doctor's
+// appointments are also kept sorted by time in an immutable array, replaced
+// after every change to that doctor, so a doctor's schedule is read without
+// locking or copying; reports and saves get a ScheduleSnapshot assembled from
+// those arrays.
+// Safe for concurrent use without a global lock: the ID map is a
+// ConcurrentHashMap, each secondary key holds a small insertion-ordered set
+// guarded by its own monitor, and each doctor's array is swapped by its own
+// compare-and-set, so changes to different doctors never wait for each other.
+// An appointment enters its doctor's array before it can be found by ID (and
+// so before anyone can cancel it), so a schedule never keeps a cancelled one.
+// Iteration of the store itself is weakly consistent and unordered.
+public class AppointmentStore extends AbstractCollection<Appointment> {
+    private final ConcurrentMap<String, Appointment> byId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Appointment>> byPatientId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Appointment>> byPatientName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Appointment[]> byDoctor = new ConcurrentHashMap<>(); // Never empty or changed once published
+
+    // Undated bookings (the daily slot list) first, then by date; within a day by
+    // time of day, then slot label, then appointment ID; labels that are not a time sort last
+    static final Comparator<Appointment> BY_TIME = Comparator
+        .comparing(Appointment::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparingInt((Appointment a) -> {
+            int minute = SlotCalendar.parseSlot(a.getTimeSlot());
+            return minute < 0 ? Integer.MAX_VALUE : minute;
+        })
+        .thenComparing(Appointment::getTimeSlot, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(Appointment::getAppointmentId);
+
+    @Override
+    public boolean add(Appointment appointment) {
+        publish(appointment.getDoctor().getDoctorId(), day -> ScheduleSnapshot.with(day, appointment));
+        index(appointment);
+        return true;
+    }
+
+    // Bulk load: each doctor's array is sorted once instead of once per appointment
+    @Override
+    public boolean addAll(Collection<? extends Appointment> appointments) {
+        Map<String, List<Appointment>> grouped = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            grouped.computeIfAbsent(appointment.getDoctor().getDoctorId(), k -> new ArrayList<>()).add(appointment);
+        }
+        for (Map.Entry<String, List<Appointment>> doctor : grouped.entrySet()) {
+            publish(doctor.getKey(), day -> ScheduleSnapshot.withAll(day, doctor.getValue()));
+        }
+        for (Appointment appointment : appointments) {
+            index(appointment);
+        }
+        return !appointments.isEmpty();
+    }
+
+    private void index(Appointment appointment) {
+        Appointment previous = byId.put(appointment.getAppointmentId(), appointment);
+        if (previous != null && previous != appointment) {
+            unindex(previous);
+        }
+        addToIndex(byPatientId, appointment.getPatient().getPatientId(), appointment, LinkedHashSet::new);
+        addToIndex(byPatientName, normalizeName(appointment.getPatient().getName()), appointment, LinkedHashSet::new);
+    }
+
+    // Every doctor's current schedule, assembled in O(doctors log doctors); never
+    // changes once returned
+    public ScheduleSnapshot snapshot() {
+        return ScheduleSnapshot.of(byDoctor);
+    }
+
+    public Appointment findById(String appointmentId) {
+        return byId.get(appointmentId);
+    }
+
+    // Appointments for a patient in booking order
+    public List<Appointment> findByPatientId(String patientId) {
+        return copyOf(byPatientId.get(patientId));
+    }
+
+    // Appointments for a patient name (case and spacing insensitive) in booking order
+    public List<Appointment> findByPatientName(String patientName) {
+        return copyOf(byPatientName.get(normalizeName(patientName)));
+    }
+
+    // A doctor's appointments in time order (read-only; later changes do not affect it)
+    public List<Appointment> findByDoctorId(String doctorId) {
+        Appointment[] day = byDoctor.get(doctorId);
+        return day == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(day));
+    }
+
+    // IDs of the doctors with at least one appointment, sorted
+    public List<String> bookedDoctorIds() {
+        List<String> doctorIds = new ArrayList<>(byDoctor.keySet());
+        Collections.sort(doctorIds);
+        return doctorIds;
+    }
+
+    // Earliest booked appointment for a patient name, or null
+    public Appointment findFirstByPatientName(String patientName) {
+        Set<Appointment> matches = byPatientName.get(normalizeName(patientName));
+        if (matches == null) {
+            return null;
+        }
+        synchronized (matches) {
+            return matches.isEmpty() ? null : matches.iterator().next();
+        }
+    }
+
+    // Remove an appointment; only one caller can win for a given ID
+    public Appointment removeById(String appointmentId) {
+        Appointment removed = byId.remove(appointmentId);
+        if (removed != null) {
+            unindex(removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Appointment)) {
+            return false;
+        }
+        Appointment appointment = (Appointment) o;
+        if (!byId.remove(appointment.getAppointmentId(), appointment)) {
+            return false;
+        }
+        unindex(appointment);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Appointment && byId.get(((Appointment) o).getAppointmentId()) == o;
+    }
+
+    @Override
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public void clear() {
+        byId.clear();
+        byPatientId.clear();
+        byPatientName.clear();
+        byDoctor.clear();
+    }
+
+    @Override
+    public Iterator<Appointment> iterator() {
+        Iterator<Appointment> values = byId.values().iterator();
+        return new Iterator<Appointment>() {
+            private Appointment last;
+
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public Appointment next() {
+                last = values.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                values.remove();
+                unindex(last);
+            }
+        };
+    }
+
+    private void unindex(Appointment appointment) {
+        removeFromIndex(byPatientId, appointment.getPatient().getPatientId(), appointment);
+        removeFromIndex(byPatientName, normalizeName(appointment.getPatient().getName()), appointment);
+        publish(appointment.getDoctor().getDoctorId(), day -> ScheduleSnapshot.without(day, appointment));
+    }
+
+    // Swap in a doctor's next array (an empty one removes the doctor); retried if
+    // another change to the same doctor was published first. The map compares
+    // arrays by identity.
+    private void publish(String doctorId, UnaryOperator<Appointment[]> change) {
+        while (true) {
+            Appointment[] current = byDoctor.get(doctorId);
+            Appointment[] updated = change.apply(current);
+            if (updated == current) {
+                return;
+            }
+            boolean swapped;
+            if (current == null) {
+                swapped = byDoctor.putIfAbsent(doctorId, updated) == null;
+            } else if (updated.length == 0) {
+                swapped = byDoctor.remove(doctorId, current);
+            } else {
+                swapped = byDoctor.replace(doctorId, current, updated);
+            }
+            if (swapped) {
+                return;
+            }
+        }
+    }
+
+    private static List<Appointment> copyOf(Set<Appointment> matches) {
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        synchronized (matches) {
+            return new ArrayList<>(matches);
+        }
+    }
+
+    // Sets are created and dropped inside compute so a writer never adds to a detached set
+    private static void addToIndex(ConcurrentMap<String, Set<Appointment>> index, String key, Appointment appointment,
+                                   Supplier<Set<Appointment>> newSet) {
+        index.compute(key, (k, matches) -> {
+            Set<Appointment> updated = matches == null ? newSet.get() : matches;
+            synchronized (updated) {
+                updated.add(appointment);
+            }
+            return updated;
+        });
+    }
+
+    private static void removeFromIndex(ConcurrentMap<String, Set<Appointment>> index, String key, Appointment appointment) {
+        index.computeIfPresent(key, (k, matches) -> {
+            synchronized (matches) {
+                matches.remove(appointment);
+                return matches.isEmpty() ? null : matches;
+            }
+        });
+    }
+
+    // Lower-case, trimmed, single-spaced form used for name lookups
+    static String normalizeName(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
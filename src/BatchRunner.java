@@ -0,0 +1,264 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+
+// Runs a file of front-desk commands against AppointmentManager without the
+// interactive menu, then reports throughput and latency percentiles.
+//
+// One command per line, comma separated like the CSV files ('#' starts a comment):
+//   register-doctor,<registration>,<name>,<specialization>,<fee>,<slot;slot;...>[,<weekly template>]
+//     (template like MON=09:00AM;10:00AM|WED=02:00PM; by default the slots recur every day)
+//   register-patient,<name>,<mobile>,<email>,<city>,<age>,<medical history>
+//   book,<patient ID or name>,<doctor ID or name>,<time slot>
+//   book-earliest,<patient ID or name>,<specialization>
+//   book-on,<patient ID or name>,<doctor ID or name>,<YYYY-MM-DD>,<time slot>
+//   waitlist,<patient ID or name>,<doctor ID or name, or blank>,<specialization, or blank>,<slot;slot;... or blank for any>
+//   cancel,<appointment ID or patient name>
+//   status
+public class BatchRunner {
+    private final AppointmentManager manager;
+    private final Map<String, Integer> commandCounts = new TreeMap<>();
+    private final CsvTokenizer tokenizer = new CsvTokenizer(); // Reused for every line
+    private long[] latencies = new long[1024];
+    private int operations;
+    private int errors;
+    private long elapsedNanos;
+
+    public BatchRunner(AppointmentManager manager) {
+        this.manager = manager;
+    }
+
+    public static void run(AppointmentManager manager, File commandFile) {
+        BatchRunner runner = new BatchRunner(manager);
+        boolean wasVerbose = manager.isVerbose();
+        manager.setVerbose(false);
+        try {
+            runner.execute(commandFile);
+            manager.flush();
+        } finally {
+            manager.setVerbose(wasVerbose);
+        }
+        runner.printReport();
+    }
+
+    public void execute(File commandFile) {
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(new FileReader(commandFile))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = tokenizer.reset(line).toArray();
+                long opStart = System.nanoTime();
+                try {
+                    executeCommand(parts);
+                } catch (IllegalArgumentException e) {
+                    errors++;
+                    System.err.println(" Line " + lineNumber + ": " + e.getMessage());
+                }
+                recordLatency(System.nanoTime() - opStart);
+                commandCounts.merge(parts[0].trim().toLowerCase(), 1, Integer::sum);
+            }
+        } catch (IOException e) {
+            System.err.println(" Error reading batch file: " + e.getMessage());
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void executeCommand(String[] parts) {
+        String command = parts[0].trim().toLowerCase();
+        switch (command) {
+            case "register-doctor": {
+                requireFields(parts, 6, command);
+                List<String> slots = new ArrayList<>();
+                for (String slot : parts[5].split(";")) {
+                    if (!slot.trim().isEmpty()) {
+                        slots.add(slot.trim());
+                    }
+                }
+                if (manager.isRegistrationNumberExists(parts[1])) {
+                    throw new IllegalArgumentException("Registration number already exists: " + parts[1]);
+                }
+                Doctor doctor = new Doctor(manager.generateDoctorId(), parts[1], parts[2], parts[3], slots, parseFee(parts[4]));
+                if (parts.length > 6 && !parts[6].trim().isEmpty()) {
+                    doctor.setWeeklySchedule(WeeklySchedule.parse(parts[6]));
+                }
+                manager.registerDoctor(doctor);
+                break;
+            }
+            case "register-patient": {
+                requireFields(parts, 7, command);
+                // A returning patient keeps their existing record and ID
+                manager.findOrRegisterPatient(parts[1], parts[2], parts[3], parts[4], parseAge(parts[5]), parts[6]);
+                break;
+            }
+            case "book": {
+                requireFields(parts, 4, command);
+                Patient patient = resolvePatient(parts[1]);
+                Doctor doctor = resolveDoctor(parts[2]);
+                manager.bookAppointment(patient, doctor, parts[3].trim());
+                break;
+            }
+            case "book-earliest": {
+                requireFields(parts, 3, command);
+                Patient patient = resolvePatient(parts[1]);
+                DoctorDirectory.FreeSlot slot = manager.findEarliestFreeSlot(parts[2]);
+                if (slot == null) {
+                    throw new IllegalArgumentException("No free slot for specialization '" + parts[2].trim() + "'");
+                }
+                manager.bookAppointment(patient, slot.getDoctor(), slot.getTimeSlot());
+                break;
+            }
+            case "book-on": {
+                requireFields(parts, 5, command);
+                Patient patient = resolvePatient(parts[1]);
+                Doctor doctor = resolveDoctor(parts[2]);
+                manager.bookDatedAppointment(patient, doctor, parseDate(parts[3]), parts[4].trim());
+                break;
+            }
+            case "waitlist": {
+                requireFields(parts, 5, command);
+                Patient patient = resolvePatient(parts[1]);
+                Doctor doctor = parts[2].trim().isEmpty() ? null : resolveDoctor(parts[2]);
+                List<String> slots = new ArrayList<>();
+                for (String slot : parts[4].split(";")) {
+                    if (!slot.trim().isEmpty()) {
+                        slots.add(slot.trim());
+                    }
+                }
+                manager.joinWaitlist(patient, doctor, parts[3], slots);
+                break;
+            }
+            case "cancel": {
+                requireFields(parts, 2, command);
+                String target = parts[1].trim();
+                if (manager.findAppointmentById(target) != null) {
+                    manager.cancelAppointmentById(target);
+                } else {
+                    manager.cancelAppointment(target);
+                }
+                break;
+            }
+            case "status":
+                manager.displaySystemStatus();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command '" + parts[0] + "'");
+        }
+        operations++;
+    }
+
+    private Patient resolvePatient(String key) {
+        Patient patient = manager.findPatientById(key.trim());
+        if (patient == null) {
+            List<Patient> named = manager.findPatientsByName(key);
+            patient = named.isEmpty() ? null : named.get(named.size() - 1); // Most recently registered
+        }
+        if (patient == null) {
+            throw new IllegalArgumentException("Unknown patient '" + key + "' (register-patient first)"
+                + didYouMean(manager.searchPatients(key, 3), Patient::getName));
+        }
+        return patient;
+    }
+
+    private Doctor resolveDoctor(String key) {
+        Doctor doctor = manager.findDoctorById(key.trim());
+        if (doctor == null) {
+            doctor = manager.findDoctorByName(key.trim());
+        }
+        if (doctor == null) {
+            throw new IllegalArgumentException("Unknown doctor '" + key + "'"
+                + didYouMean(manager.searchDoctors(key, 3), Doctor::getName));
+        }
+        return doctor;
+    }
+
+    private static <T> String didYouMean(List<T> matches, Function<T, String> nameOf) {
+        if (matches.isEmpty()) {
+            return "";
+        }
+        List<String> names = new ArrayList<>();
+        for (T match : matches) {
+            names.add(nameOf.apply(match));
+        }
+        return " - did you mean " + String.join(", ", names) + "?";
+    }
+
+    private static void requireFields(String[] parts, int count, String command) {
+        if (parts.length < count) {
+            throw new IllegalArgumentException(command + " needs " + (count - 1) + " field(s), got " + (parts.length - 1));
+        }
+    }
+
+    private static double parseFee(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid fee '" + value + "'");
+        }
+    }
+
+    private static int parseAge(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid age '" + value + "'");
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + value + "' (use YYYY-MM-DD)");
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        int count = operations + errors;
+        if (count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[count - 1] = nanos;
+    }
+
+    public void printReport() {
+        int count = operations + errors;
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println(" BATCH RUN SUMMARY");
+        System.out.println("=".repeat(60));
+        for (Map.Entry<String, Integer> entry : commandCounts.entrySet()) {
+            System.out.println(" " + entry.getKey() + ": " + entry.getValue());
+        }
+        System.out.println(" Operations: " + operations + " | Errors: " + errors);
+        System.out.println(" CSV saves: " + manager.getSaveCount());
+        System.out.println(" Elapsed: " + String.format("%.1f ms", elapsedNanos / 1e6));
+        if (count > 0 && elapsedNanos > 0) {
+            System.out.println(" Throughput: " + String.format("%.0f ops/sec", count / (elapsedNanos / 1e9)));
+            System.out.println(" Latency (us): p50 " + micros(percentile(sorted, 50))
+                + " | p90 " + micros(percentile(sorted, 90))
+                + " | p99 " + micros(percentile(sorted, 99))
+                + " | max " + micros(sorted[count - 1]));
+        }
+        System.out.println("=".repeat(60));
+    }
+
+    // Nearest-rank percentile of a sorted array
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1e3);
+    }
+}
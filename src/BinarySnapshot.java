@@ -0,0 +1,350 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Binary copy of all saved data, used to restart without re-parsing the CSV
+// files. The CSV files stay the interchange format; the snapshot is only read
+// when it was written after them. In journal mode it is also the checkpoint:
+// it records how much of the journal it already includes.
+//
+// Layout (all counts and references are unsigned varints):
+//   int magic, int version, long CRC32 of everything after this header
+//   string dictionary: count, then length-prefixed UTF-8 strings
+//   doctors:      count, then id, registration, name, specialization (dictionary refs),
+//                 fee (double), slot count, slot refs, weekly template ref (version 4)
+//   patients:     count, then id, name, mobile, email, city refs, age, history ref
+//   appointments: count, then id ref, patient index, doctor index, time slot ref,
+//                 date ref (version 4; null for undated bookings)
+//   cancellations: same as appointments, oldest first
+//   ID counters:  count, then prefix ref, last value
+//   waitlist:     count, then entry id ref, patient index, doctor id ref,
+//                 specialization ref, slot count, slot refs, enqueued time (long)
+//                 (version 2 and later; version 1 files are still read)
+//   first cancellation number (long), since older ones are in the archive
+//                 (version 3 and later; earlier files start at 1)
+//   journal position: generation (long), records (long) already included
+//                 (version 5; -1 when written without a journal)
+// Every string goes through the dictionary, so repeated values such as
+// specializations, cities and time slots are stored (and loaded) once.
+public class BinarySnapshot {
+    private static final int MAGIC = 0x48534E50; // "HSNP"
+    private static final int VERSION = 5;
+    private static final int HEADER_BYTES = 16;
+
+    final List<Doctor> doctors = new ArrayList<>();
+    final List<Patient> patients = new ArrayList<>();
+    final List<Appointment> appointments = new ArrayList<>();
+    final List<Appointment> cancellations = new ArrayList<>(); // Oldest first
+    long firstCancellation = 1;                                 // Number of cancellations.get(0)
+    final Map<String, Long> idCounters = new TreeMap<>();
+    final List<WaitlistEntry> waitlist = new ArrayList<>();
+    final Map<Doctor, List<String>> freeSlots = new IdentityHashMap<>(); // As captured (written images only)
+    long journalGeneration = -1;                                        // Journal records it already includes
+    long journalRecords;
+
+    // Snapshots are on unless -Dhospital.snapshot=false
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("hospital.snapshot", "true"));
+    }
+
+    // Copy the manager's state in memory, to be written later. The copy is only
+    // a point-in-time image if no change is in progress (AppointmentManager.checkpoint).
+    static BinarySnapshot capture(AppointmentManager manager) {
+        BinarySnapshot image = new BinarySnapshot();
+        image.doctors.addAll(manager.getAllDoctors());
+        for (Doctor doctor : image.doctors) {
+            image.freeSlots.put(doctor, doctor.getAvailableTimeSlots());
+        }
+        image.patients.addAll(CSVManager.collectPatients(manager));
+        image.appointments.addAll(manager.appointments.snapshot());
+        image.firstCancellation = manager.cancellationHistory.copyInMemory(image.cancellations);
+        image.idCounters.putAll(manager.idAllocator.snapshot());
+        for (WaitlistEntry entry : manager.rescheduleQueue) {
+            image.waitlist.add(entry);
+        }
+        return image;
+    }
+
+    // Write a captured image; readers never see a partly written file, and the
+    // file is synced before it replaces the previous one
+    void write(File file) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        Map<Doctor, Integer> doctorIndex = new IdentityHashMap<>();
+        writeVarint(body, doctors.size());
+        for (Doctor doctor : doctors) {
+            doctorIndex.put(doctor, doctorIndex.size());
+            writeString(body, dictionary, doctor.getDoctorId());
+            writeString(body, dictionary, doctor.getRegistrationNumber());
+            writeString(body, dictionary, doctor.getName());
+            writeString(body, dictionary, doctor.getSpecialization());
+            body.writeDouble(doctor.getConsultationFee());
+            List<String> slots = freeSlots.get(doctor);
+            writeVarint(body, slots.size());
+            for (String slot : slots) {
+                writeString(body, dictionary, slot);
+            }
+            writeString(body, dictionary, doctor.getWeeklySchedule().format());
+        }
+
+        Map<Patient, Integer> patientIndex = new HashMap<>(patients.size() * 2); // Patients are equal by ID
+        writeVarint(body, patients.size());
+        for (Patient patient : patients) {
+            patientIndex.put(patient, patientIndex.size());
+            writeString(body, dictionary, patient.getPatientId());
+            writeString(body, dictionary, patient.getName());
+            writeString(body, dictionary, patient.getMobile());
+            writeString(body, dictionary, patient.getEmail());
+            writeString(body, dictionary, patient.getCity());
+            body.writeInt(patient.getAge());
+            writeString(body, dictionary, patient.getMedicalHistory());
+        }
+
+        writeAppointments(body, dictionary, appointments, doctorIndex, patientIndex);
+        writeAppointments(body, dictionary, cancellations, doctorIndex, patientIndex);
+
+        writeVarint(body, idCounters.size());
+        for (Map.Entry<String, Long> entry : idCounters.entrySet()) {
+            writeString(body, dictionary, entry.getKey());
+            body.writeLong(entry.getValue());
+        }
+        
+        List<WaitlistEntry> loadable = new ArrayList<>();
+        for (WaitlistEntry entry : waitlist) {
+            if (patientIndex.containsKey(entry.getPatient())) {
+                loadable.add(entry);
+            }
+        }
+        writeVarint(body, loadable.size());
+        for (WaitlistEntry entry : loadable) {
+            writeString(body, dictionary, entry.getEntryId());
+            writeVarint(body, patientIndex.get(entry.getPatient()));
+            writeString(body, dictionary, entry.getDoctorId());
+            writeString(body, dictionary, entry.getSpecialization());
+            writeVarint(body, entry.getAcceptableSlots().size());
+            for (String slot : entry.getAcceptableSlots()) {
+                writeString(body, dictionary, slot);
+            }
+            body.writeLong(entry.getEnqueuedAt());
+        }
+        body.writeLong(firstCancellation);
+        body.writeLong(journalGeneration);
+        body.writeLong(journalRecords);
+        body.flush();
+
+        ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream dictionaryOut = new DataOutputStream(dictionaryBytes);
+        writeVarint(dictionaryOut, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(dictionaryOut, utf8.length);
+            dictionaryOut.write(utf8);
+        }
+        dictionaryOut.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(dictionaryBytes.toByteArray());
+        crc.update(bodyBytes.toByteArray());
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(crc.getValue());
+            dictionaryBytes.writeTo(out);
+            bodyBytes.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync(); // A checkpoint drops journal records once this file is in place
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Read a snapshot with one sequential read. Booked slots are claimed on the
+    // doctors exactly as loading appointments.csv does.
+    public static BinarySnapshot read(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot file: " + file.getName());
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        long expectedCrc = buffer.getLong();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, buffer.limit() - HEADER_BYTES);
+        if (crc.getValue() != expectedCrc) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+
+        try {
+            String[] strings = new String[readCount(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readCount(buffer);
+                strings[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+
+            BinarySnapshot snapshot = new BinarySnapshot();
+            int doctorCount = readCount(buffer);
+            for (int d = 0; d < doctorCount; d++) {
+                String doctorId = readString(buffer, strings);
+                String registrationNumber = readString(buffer, strings);
+                String name = readString(buffer, strings);
+                String specialization = readString(buffer, strings);
+                double consultationFee = buffer.getDouble();
+                int slotCount = readCount(buffer);
+                List<String> timeSlots = new ArrayList<>(slotCount);
+                for (int s = 0; s < slotCount; s++) {
+                    timeSlots.add(readString(buffer, strings));
+                }
+                Doctor doctor = new Doctor(doctorId, registrationNumber, name, specialization, timeSlots, consultationFee);
+                if (version >= 4) {
+                    doctor.setWeeklySchedule(WeeklySchedule.parse(readString(buffer, strings)));
+                }
+                snapshot.doctors.add(doctor);
+            }
+
+            int patientCount = readCount(buffer);
+            for (int p = 0; p < patientCount; p++) {
+                String patientId = readString(buffer, strings);
+                String name = readString(buffer, strings);
+                String mobile = readString(buffer, strings);
+                String email = readString(buffer, strings);
+                String city = readString(buffer, strings);
+                int age = buffer.getInt();
+                String medicalHistory = readString(buffer, strings);
+                snapshot.patients.add(new Patient(patientId, name, mobile, email, city, age, medicalHistory));
+            }
+
+            int appointmentCount = readCount(buffer);
+            for (int a = 0; a < appointmentCount; a++) {
+                Appointment appointment = readAppointment(buffer, strings, snapshot, version);
+                if (!appointment.isDated()) {
+                    appointment.getDoctor().bookTimeSlot(appointment.getTimeSlot());
+                }
+                snapshot.appointments.add(appointment);
+            }
+            int cancellationCount = readCount(buffer);
+            for (int c = 0; c < cancellationCount; c++) {
+                snapshot.cancellations.add(readAppointment(buffer, strings, snapshot, version));
+            }
+
+            int counterCount = readCount(buffer);
+            for (int c = 0; c < counterCount; c++) {
+                snapshot.idCounters.put(readString(buffer, strings), buffer.getLong());
+            }
+            
+            int waitlistCount = version >= 2 ? readCount(buffer) : 0;
+            for (int w = 0; w < waitlistCount; w++) {
+                String entryId = readString(buffer, strings);
+                Patient patient = snapshot.patients.get(readCount(buffer));
+                String doctorId = readString(buffer, strings);
+                String specialization = readString(buffer, strings);
+                int slotCount = readCount(buffer);
+                List<String> slots = new ArrayList<>(slotCount);
+                for (int s = 0; s < slotCount; s++) {
+                    slots.add(readString(buffer, strings));
+                }
+                snapshot.waitlist.add(new WaitlistEntry(entryId, patient, doctorId, specialization, slots, buffer.getLong()));
+            }
+            if (version >= 3) {
+                snapshot.firstCancellation = buffer.getLong();
+            }
+            if (version >= 5) {
+                snapshot.journalGeneration = buffer.getLong();
+                snapshot.journalRecords = buffer.getLong();
+            }
+            return snapshot;
+        } catch (RuntimeException e) {
+            // Truncated or inconsistent data that still passed the checksum
+            throw new IOException("Corrupt snapshot: " + e, e);
+        }
+    }
+
+    private static void writeAppointments(DataOutputStream out, Map<String, Integer> dictionary, Collection<Appointment> appointments,
+                                          Map<Doctor, Integer> doctorIndex, Map<Patient, Integer> patientIndex) throws IOException {
+        int count = 0;
+        for (Appointment appointment : appointments) {
+            if (doctorIndex.containsKey(appointment.getDoctor()) && patientIndex.containsKey(appointment.getPatient())) {
+                count++;
+            }
+        }
+        writeVarint(out, count);
+        for (Appointment appointment : appointments) {
+            Integer doctor = doctorIndex.get(appointment.getDoctor());
+            Integer patient = patientIndex.get(appointment.getPatient());
+            if (doctor == null || patient == null) {
+                continue; // Not loadable from CSV either
+            }
+            writeString(out, dictionary, appointment.getAppointmentId());
+            writeVarint(out, patient);
+            writeVarint(out, doctor);
+            writeString(out, dictionary, appointment.getTimeSlot());
+            writeString(out, dictionary, appointment.isDated() ? appointment.getDate().toString() : null);
+        }
+    }
+
+    private static Appointment readAppointment(ByteBuffer buffer, String[] strings, BinarySnapshot snapshot, int version) {
+        String appointmentId = readString(buffer, strings);
+        Patient patient = snapshot.patients.get(readCount(buffer));
+        Doctor doctor = snapshot.doctors.get(readCount(buffer));
+        String timeSlot = readString(buffer, strings);
+        String date = version >= 4 ? readString(buffer, strings) : null;
+        return new Appointment(appointmentId, patient, doctor, timeSlot, date == null ? null : LocalDate.parse(date));
+    }
+
+    // null is stored as reference 0; dictionary entries start at 1
+    private static void writeString(DataOutputStream out, Map<String, Integer> dictionary, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        Integer ref = dictionary.get(value);
+        if (ref == null) {
+            ref = dictionary.size() + 1;
+            dictionary.put(value, ref);
+        }
+        writeVarint(out, ref);
+    }
+
+    private static String readString(ByteBuffer buffer, String[] strings) {
+        int ref = readCount(buffer);
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readCount(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalStateException("Negative count in snapshot");
+                }
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in snapshot");
+    }
+}
@@ -0,0 +1,109 @@
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Dated appointments indexed by time. Each doctor has a skip list keyed by
+// DatedSlot.key() (minutes since the epoch), and one shared skip list orders
+// every booking by (time, doctor ID). Claiming a slot is an atomic putIfAbsent
+// on the doctor's list, so two desks can never book the same dated slot, and
+// range queries ("Dr. X next week", "everything on date D") cost O(log n) to
+// find the start plus the bookings returned.
+// Safe for concurrent use; range reads are weakly consistent.
+public class BookingIndex {
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Long, Appointment>> byDoctor = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<TimeKey, Appointment> byTime = new ConcurrentSkipListMap<>();
+
+    // Claim the appointment's dated slot; false if another booking holds it
+    public boolean claim(Appointment appointment) {
+        long key = keyOf(appointment);
+        ConcurrentSkipListMap<Long, Appointment> doctorBookings =
+            byDoctor.computeIfAbsent(appointment.getDoctor().getDoctorId(), id -> new ConcurrentSkipListMap<>());
+        if (doctorBookings.putIfAbsent(key, appointment) != null) {
+            return false;
+        }
+        byTime.put(new TimeKey(key, appointment.getDoctor().getDoctorId()), appointment);
+        return true;
+    }
+
+    // Free the slot held by this appointment; false if it did not hold it
+    public boolean release(Appointment appointment) {
+        long key = keyOf(appointment);
+        ConcurrentSkipListMap<Long, Appointment> doctorBookings = byDoctor.get(appointment.getDoctor().getDoctorId());
+        if (doctorBookings == null || !doctorBookings.remove(key, appointment)) {
+            return false;
+        }
+        byTime.remove(new TimeKey(key, appointment.getDoctor().getDoctorId()), appointment);
+        return true;
+    }
+
+    public boolean isBooked(String doctorId, LocalDate date, int minute) {
+        ConcurrentSkipListMap<Long, Appointment> doctorBookings = byDoctor.get(doctorId);
+        return doctorBookings != null && doctorBookings.containsKey(DatedSlot.key(date, minute));
+    }
+
+    // A doctor's bookings from one date to another (both inclusive), in time order
+    public NavigableMap<Long, Appointment> forDoctor(String doctorId, LocalDate from, LocalDate to) {
+        ConcurrentSkipListMap<Long, Appointment> doctorBookings = byDoctor.get(doctorId);
+        if (doctorBookings == null) {
+            return Collections.emptyNavigableMap();
+        }
+        return Collections.unmodifiableNavigableMap(
+            doctorBookings.subMap(DatedSlot.key(from, 0), true, DatedSlot.key(to.plusDays(1), 0), false));
+    }
+
+    // Every booking on a date, in time order and then by doctor ID
+    public List<Appointment> onDate(LocalDate date) {
+        long start = DatedSlot.key(date, 0);
+        long end = DatedSlot.key(date.plusDays(1), 0);
+        return new ArrayList<>(byTime.subMap(new TimeKey(start, ""), true, new TimeKey(end, ""), false).values());
+    }
+
+    public int size() {
+        return byTime.size();
+    }
+
+    public void clear() {
+        byDoctor.clear();
+        byTime.clear();
+    }
+
+    // Only dated appointments at a clock time have a slot here; check loaded data first
+    public static boolean canClaim(Appointment appointment) {
+        return appointment.getDate() != null && SlotCalendar.parseSlot(appointment.getTimeSlot()) >= 0;
+    }
+
+    private static long keyOf(Appointment appointment) {
+        if (!canClaim(appointment)) {
+            throw new IllegalArgumentException("Not a dated clock-time appointment: " + appointment.getAppointmentId());
+        }
+        return DatedSlot.key(appointment.getDate(), SlotCalendar.parseSlot(appointment.getTimeSlot()));
+    }
+
+    private static final class TimeKey implements Comparable<TimeKey> {
+        final long time;
+        final String doctorId;
+
+        TimeKey(long time, String doctorId) {
+            this.time = time;
+            this.doctorId = doctorId;
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : doctorId.compareTo(other.doctorId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TimeKey && compareTo((TimeKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(time) * 31 + doctorId.hashCode();
+        }
+    }
+}
@@ -1,14 +1,35 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Function;
 
 public class CSVManager {
     // Get the project root directory (parent of src if running from src, otherwise current directory)
     private static final String PROJECT_ROOT = getProjectRoot();
-    private static final String DATA_DIR = PROJECT_ROOT + "/data";
+    // Data directory can be overridden with -Dhospital.data.dir (used by benchmarks)
+    private static final String DATA_DIR = System.getProperty("hospital.data.dir", PROJECT_ROOT + "/data");
     private static final String DOCTORS_FILE = DATA_DIR + "/doctors.csv";
     private static final String PATIENTS_FILE = DATA_DIR + "/patients.csv";
     private static final String APPOINTMENTS_FILE = DATA_DIR + "/appointments.csv";
     private static final String CANCELLATIONS_FILE = DATA_DIR + "/cancellations.csv";
+    private static final String CANCELLATION_ARCHIVE_DIR = DATA_DIR + "/cancellations";
+    private static final String WAITLIST_FILE = DATA_DIR + "/waitlist.csv";
+    private static final String JOURNAL_FILE = DATA_DIR + "/journal.log";
+    private static final String ID_COUNTERS_FILE = DATA_DIR + "/id_counters.csv";
+    private static final String SNAPSHOT_FILE = DATA_DIR + "/snapshot.bin";
+    // Partitioned layout (-Dhospital.data.layout=partitioned): one file per doctor / patient ID range
+    private static final String APPOINTMENT_PARTITIONS_DIR = DATA_DIR + "/appointments";
+    private static final String PATIENT_PARTITIONS_DIR = DATA_DIR + "/patients";
+    private static final String APPOINTMENTS_HEADER = "AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee,Date";
+    private static final String PATIENTS_HEADER = "PatientID,Name,Mobile,Email,City,Age,MedicalHistory";
+    
+    // Memory-mapped parallel reader used by every load method
+    static ParallelCsvLoader loader = ParallelCsvLoader.fromSystemProperty(); // Package-private for testing
+    private static final ThreadLocal<CsvTokenizer> TOKENIZER = ThreadLocal.withInitial(CsvTokenizer::new);
     
     // Determine the correct project root directory
     private static String getProjectRoot() {
@@ -21,7 +42,7 @@ public class CSVManager {
     }
     
     // Ensure data directory exists
-    private static void ensureDataDirectoryExists() {
+    static void ensureDataDirectoryExists() {
         File dataDir = new File(DATA_DIR);
         if (!dataDir.exists()) {
             dataDir.mkdirs();
@@ -34,29 +55,32 @@ public class CSVManager {
         saveDoctors(doctors, false);
     }
     
-    // Save doctors to CSV with verbose option
-    public static void saveDoctors(List<Doctor> doctors, boolean verbose) {
+    // Save doctors to CSV with verbose option; returns false if the file could not be written
+    public static boolean saveDoctors(List<Doctor> doctors, boolean verbose) {
         ensureDataDirectoryExists();
         try (PrintWriter writer = new PrintWriter(new FileWriter(DOCTORS_FILE))) {
             // Write header
-            writer.println("DoctorID,RegistrationNumber,Name,Specialization,ConsultationFee,AvailableTimeSlots");
+            writer.println("DoctorID,RegistrationNumber,Name,Specialization,ConsultationFee,AvailableTimeSlots,WeeklyTemplate");
             
             // Write doctor data
             for (Doctor doctor : doctors) {
-                writer.printf("%s,%s,%s,%s,%.2f,\"%s\"%n",
+                writer.printf("%s,%s,%s,%s,%.2f,\"%s\",%s%n",
                     escapeCSV(doctor.getDoctorId()),
                     escapeCSV(doctor.getRegistrationNumber()),
                     escapeCSV(doctor.getName()),
                     escapeCSV(doctor.getSpecialization()),
                     doctor.getConsultationFee(),
-                    String.join(";", doctor.getAvailableTimeSlots())
+                    String.join(";", doctor.getAvailableTimeSlots()),
+                    escapeCSV(doctor.getWeeklySchedule().format())
                 );
             }
             if (verbose) {
                 System.out.println(" Doctors data saved to data/doctors.csv");
             }
+            return !writer.checkError();
         } catch (IOException e) {
             System.err.println(" Error saving doctors: " + e.getMessage());
+            return false;
         }
     }
     
@@ -65,150 +89,548 @@ public class CSVManager {
         savePatients(patients, false);
     }
     
-    // Save patients to CSV with verbose option
-    public static void savePatients(List<Patient> patients, boolean verbose) {
+    // Save patients to CSV with verbose option; returns false if the file could not be written
+    public static boolean savePatients(List<Patient> patients, boolean verbose) {
         ensureDataDirectoryExists();
         try (PrintWriter writer = new PrintWriter(new FileWriter(PATIENTS_FILE))) {
             // Write header
-            writer.println("PatientID,Name,Mobile,Email,City,Age,MedicalHistory");
+            writer.println(PATIENTS_HEADER);
             
             // Write patient data
             for (Patient patient : patients) {
-                writer.printf("%s,%s,%s,%s,%s,%d,%s%n",
-                    escapeCSV(patient.getPatientId()),
-                    escapeCSV(patient.getName()),
-                    escapeCSV(patient.getMobile()),
-                    escapeCSV(patient.getEmail()),
-                    escapeCSV(patient.getCity()),
-                    patient.getAge(),
-                    escapeCSV(patient.getMedicalHistory())
-                );
+                writer.println(patientRow(patient));
             }
             if (verbose) {
                 System.out.println(" Patients data saved to data/patients.csv");
             }
+            return !writer.checkError();
         } catch (IOException e) {
             System.err.println(" Error saving patients: " + e.getMessage());
+            return false;
         }
     }
     
+    // One patients.csv row; patient partitions use the same format
+    private static String patientRow(Patient patient) {
+        return String.format("%s,%s,%s,%s,%s,%d,%s",
+            escapeCSV(patient.getPatientId()),
+            escapeCSV(patient.getName()),
+            escapeCSV(patient.getMobile()),
+            escapeCSV(patient.getEmail()),
+            escapeCSV(patient.getCity()),
+            patient.getAge(),
+            escapeCSV(patient.getMedicalHistory())
+        );
+    }
+    
     // Save appointments to CSV
-    public static void saveAppointments(List<Appointment> appointments) {
+    public static void saveAppointments(Collection<Appointment> appointments) {
         saveAppointments(appointments, false);
     }
     
-    // Save appointments to CSV with verbose option
-    public static void saveAppointments(List<Appointment> appointments, boolean verbose) {
+    // Save appointments to CSV with verbose option; returns false if the file could not be written
+    public static boolean saveAppointments(Collection<Appointment> appointments, boolean verbose) {
         ensureDataDirectoryExists();
         try (PrintWriter writer = new PrintWriter(new FileWriter(APPOINTMENTS_FILE))) {
             // Write header
-            writer.println("AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee");
+            writer.println(APPOINTMENTS_HEADER);
             
             // Write appointment data
             for (Appointment appointment : appointments) {
-                writer.printf("%s,%s,%s,%s,%s,%s,%s,%.2f%n",
-                    escapeCSV(appointment.getAppointmentId()),
-                    escapeCSV(appointment.getPatient().getPatientId()),
-                    escapeCSV(appointment.getPatient().getName()),
-                    escapeCSV(appointment.getDoctor().getDoctorId()),
-                    escapeCSV(appointment.getDoctor().getName()),
-                    escapeCSV(appointment.getDoctor().getSpecialization()),
-                    escapeCSV(appointment.getTimeSlot()),
-                    appointment.getDoctor().getConsultationFee()
-                );
+                writer.println(appointmentRow(appointment));
             }
             if (verbose) {
                 System.out.println(" Appointments data saved to data/appointments.csv");
             }
+            return !writer.checkError();
         } catch (IOException e) {
             System.err.println(" Error saving appointments: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // One appointments.csv row; appointment partitions use the same format
+    private static String appointmentRow(Appointment appointment) {
+        return String.format("%s,%s,%s,%s,%s,%s,%s,%.2f,%s",
+            escapeCSV(appointment.getAppointmentId()),
+            escapeCSV(appointment.getPatient().getPatientId()),
+            escapeCSV(appointment.getPatient().getName()),
+            escapeCSV(appointment.getDoctor().getDoctorId()),
+            escapeCSV(appointment.getDoctor().getName()),
+            escapeCSV(appointment.getDoctor().getSpecialization()),
+            escapeCSV(appointment.getTimeSlot()),
+            appointment.getDoctor().getConsultationFee(),
+            dateField(appointment)
+        );
+    }
+    
+    // Partitioned layout: rewrite the appointment files of the doctors a change
+    // touched, or (all) every doctor's; returns false if a file could not be written
+    private static boolean saveAppointmentPartitions(AppointmentManager manager, DataPartitions.Changes changes, boolean verbose) {
+        File dir = new File(APPOINTMENT_PARTITIONS_DIR);
+        dir.mkdirs();
+        try {
+            ScheduleSnapshot schedule = manager.appointments.snapshot();
+            Collection<String> doctorIds = changes.all ? schedule.doctorIds() : changes.doctorIds;
+            Set<String> written = new HashSet<>();
+            for (String doctorId : doctorIds) {
+                String name = DataPartitions.doctorPartition(doctorId) + ".csv";
+                writePartition(new File(dir, name), APPOINTMENTS_HEADER, schedule.forDoctor(doctorId), CSVManager::appointmentRow);
+                written.add(name);
+            }
+            if (changes.all) {
+                deletePartitionsExcept(dir, written);
+                Files.deleteIfExists(new File(APPOINTMENTS_FILE).toPath()); // Now superseded
+            }
+            if (verbose) {
+                System.out.println(" Appointments data saved to data/appointments/ (" + written.size() + " partition(s))");
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println(" Error saving appointments: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Rewrite the patient ID ranges a change touched, or (all) every range. Finding a
+    // range's patients reads the registry in memory; only that range's file is written.
+    private static boolean savePatientPartitions(AppointmentManager manager, DataPartitions.Changes changes, boolean verbose) {
+        File dir = new File(PATIENT_PARTITIONS_DIR);
+        dir.mkdirs();
+        try {
+            int patientsPerPartition = manager.partitions.patientsPerPartition();
+            Map<String, List<Patient>> byRange = new TreeMap<>();
+            for (String range : changes.patientRanges) {
+                byRange.put(range, new ArrayList<>()); // Written even if it ends up empty (then deleted)
+            }
+            if (changes.all || !byRange.isEmpty()) {
+                for (Patient patient : manager.patients) {
+                    String range = DataPartitions.patientRange(patient.getPatientId(), patientsPerPartition);
+                    List<Patient> rangePatients = changes.all ? byRange.computeIfAbsent(range, k -> new ArrayList<>()) : byRange.get(range);
+                    if (rangePatients != null) {
+                        rangePatients.add(patient);
+                    }
+                }
+            }
+            Set<String> written = new HashSet<>();
+            for (Map.Entry<String, List<Patient>> range : byRange.entrySet()) {
+                String name = range.getKey() + ".csv";
+                writePartition(new File(dir, name), PATIENTS_HEADER, range.getValue(), CSVManager::patientRow);
+                written.add(name);
+            }
+            if (changes.all) {
+                deletePartitionsExcept(dir, written);
+                Files.deleteIfExists(new File(PATIENTS_FILE).toPath()); // Now superseded
+            }
+            if (verbose) {
+                System.out.println(" Patients data saved to data/patients/ (" + written.size() + " partition(s))");
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println(" Error saving patients: " + e.getMessage());
+            return false;
         }
     }
     
+    // Write a partition through a temporary file so a reader never sees it half written;
+    // a partition with no rows is deleted
+    private static <T> void writePartition(File file, String header, Collection<T> rows,
+                                           Function<T, String> format) throws IOException {
+        if (rows.isEmpty()) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        Path temp = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp.toFile())))) {
+            writer.println(header);
+            for (T row : rows) {
+                writer.println(format.apply(row));
+            }
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + temp);
+            }
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    private static void deletePartitionsExcept(File dir, Set<String> keep) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!keep.contains(file.getName())) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+    
+    // Remove a partition directory once the flat file replacing it is written
+    private static void deletePartitions(String dir) {
+        File directory = new File(dir);
+        if (!directory.isDirectory()) {
+            return;
+        }
+        try {
+            deletePartitionsExcept(directory, Collections.emptySet());
+            Files.deleteIfExists(directory.toPath());
+        } catch (IOException e) {
+            System.err.println(" Error removing " + dir + ": " + e.getMessage());
+        }
+    }
+    
+    // Partition files to load, in name order, or null to load the flat file. Whichever
+    // layout is configured, a flat file wins: the partitioned layout deletes it only
+    // after every partition is written, and the flat layout deletes the partitions
+    // only after writing it, so an interrupted switch never loads half the data.
+    private static List<File> partitionsToLoad(String dir, String flatFile) {
+        File directory = new File(dir);
+        if (!directory.isDirectory() || new File(flatFile).exists()) {
+            return null;
+        }
+        File[] files = directory.listFiles((d, name) -> name.endsWith(".csv"));
+        List<File> partitions = new ArrayList<>(Arrays.asList(files == null ? new File[0] : files));
+        partitions.sort(Comparator.comparing(File::getName));
+        return partitions;
+    }
+    
+    // True when a flat appointments.csv or patients.csv still holds data the partitioned
+    // layout has not written yet (the first start after switching layouts)
+    static boolean hasFlatFiles() {
+        return new File(APPOINTMENTS_FILE).exists() || new File(PATIENTS_FILE).exists();
+    }
+    
+    // True while any data is stored in partition files
+    static boolean hasPartitions() {
+        return new File(APPOINTMENT_PARTITIONS_DIR).isDirectory() || new File(PATIENT_PARTITIONS_DIR).isDirectory();
+    }
+    
+    private static long newestPartition(String dir) {
+        File[] files = new File(dir).listFiles();
+        long newest = 0;
+        if (files != null) {
+            for (File file : files) {
+                newest = Math.max(newest, file.lastModified());
+            }
+        }
+        return newest;
+    }
+    
     // Save cancellation history to CSV
-    public static void saveCancellations(Stack<Appointment> cancellations) {
-        saveCancellations(cancellations, false);
+    public static void saveCancellations(CancellationHistory cancellations) {
+        saveCancellations(cancellations, IdAllocator.fromSystemProperty(), false);
     }
     
-    // Save cancellation history to CSV with verbose option
-    public static void saveCancellations(Stack<Appointment> cancellations, boolean verbose) {
+    // Save cancellation history to CSV with verbose option. Full segments of older
+    // cancellations are moved to the archive first, so cancellations.csv only ever
+    // holds the ones still in memory and its size stays flat. Returns false if
+    // cancellations.csv could not be written.
+    public static boolean saveCancellations(CancellationHistory cancellations, IdAllocator ids, boolean verbose) {
         ensureDataDirectoryExists();
+        archiveCancellations(cancellations, ids);
         try (PrintWriter writer = new PrintWriter(new FileWriter(CANCELLATIONS_FILE))) {
             // Write header
-            writer.println("CancellationID,AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee,CancellationOrder");
+            writer.println("CancellationID,AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee,CancellationOrder,Date");
             
-            // Convert stack to list to maintain order
-            List<Appointment> cancellationList = new ArrayList<>(cancellations);
+            // Oldest first, numbered from the first cancellation still in memory
+            List<Appointment> cancellationList = new ArrayList<>();
+            long first = cancellations.copyInMemory(cancellationList);
             
             // Write cancellation data
             for (int i = 0; i < cancellationList.size(); i++) {
-                Appointment appointment = cancellationList.get(i);
-                String cancellationId = String.format("CAN%03d", i + 1);
-                writer.printf("%s,%s,%s,%s,%s,%s,%s,%s,%.2f,%d%n",
-                    escapeCSV(cancellationId),
-                    escapeCSV(appointment.getAppointmentId()),
-                    escapeCSV(appointment.getPatient().getPatientId()),
-                    escapeCSV(appointment.getPatient().getName()),
-                    escapeCSV(appointment.getDoctor().getDoctorId()),
-                    escapeCSV(appointment.getDoctor().getName()),
-                    escapeCSV(appointment.getDoctor().getSpecialization()),
-                    escapeCSV(appointment.getTimeSlot()),
-                    appointment.getDoctor().getConsultationFee(),
-                    i + 1
-                );
+                writer.println(cancellationRow(ids, first + i, cancellationList.get(i)));
             }
             if (verbose) {
                 System.out.println(" Cancellation history saved to data/cancellations.csv");
             }
+            return !writer.checkError();
         } catch (IOException e) {
             System.err.println(" Error saving cancellations: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // One cancellations.csv row; archive segments use the same format. The ID has
+    // the same minimum width as every other generated ID.
+    static String cancellationRow(IdAllocator ids, long number, Appointment appointment) {
+        return String.format("%s,%s,%s,%s,%s,%s,%s,%s,%.2f,%d,%s",
+            escapeCSV(ids.format("CAN", number)),
+            escapeCSV(appointment.getAppointmentId()),
+            escapeCSV(appointment.getPatient().getPatientId()),
+            escapeCSV(appointment.getPatient().getName()),
+            escapeCSV(appointment.getDoctor().getDoctorId()),
+            escapeCSV(appointment.getDoctor().getName()),
+            escapeCSV(appointment.getDoctor().getSpecialization()),
+            escapeCSV(appointment.getTimeSlot()),
+            appointment.getDoctor().getConsultationFee(),
+            number,
+            dateField(appointment)
+        );
+    }
+    
+    // Date column of appointment rows; empty for bookings against the daily slot list
+    private static String dateField(Appointment appointment) {
+        return appointment.isDated() ? appointment.getDate().toString() : "";
+    }
+    
+    // The Date column as written by dateField, or null if absent or empty. A bad
+    // date throws NumberFormatException; the loaders report such a row (or one
+    // whose time is not a clock time) and skip it.
+    static LocalDate parseDate(String field) {
+        if (field == null || field.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(field);
+        } catch (DateTimeParseException e) {
+            throw new NumberFormatException("Invalid date: " + field);
+        }
+    }
+    
+    // Save the waitlist to CSV, longest-waiting first; returns false if the file could not be written
+    public static boolean saveWaitlist(Collection<WaitlistEntry> waitlist, boolean verbose) {
+        ensureDataDirectoryExists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(WAITLIST_FILE))) {
+            writer.println("EntryID,PatientID,PatientName,DoctorID,Specialization,AcceptableSlots,EnqueuedAt");
+            for (WaitlistEntry entry : waitlist) {
+                writer.printf("%s,%s,%s,%s,%s,%s,%d%n",
+                    escapeCSV(entry.getEntryId()),
+                    escapeCSV(entry.getPatient().getPatientId()),
+                    escapeCSV(entry.getPatient().getName()),
+                    escapeCSV(entry.getDoctorId()),
+                    escapeCSV(entry.getSpecialization()),
+                    escapeCSV(String.join(";", entry.getAcceptableSlots())),
+                    entry.getEnqueuedAt()
+                );
+            }
+            if (verbose) {
+                System.out.println(" Waitlist saved to data/waitlist.csv");
+            }
+            return !writer.checkError();
+        } catch (IOException e) {
+            System.err.println(" Error saving waitlist: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Save ID allocator counters to CSV; returns false if the file could not be written
+    public static boolean saveIdCounters(IdAllocator idAllocator, boolean verbose) {
+        return saveIdCounters(idAllocator, null, verbose);
+    }
+    
+    // Same, plus the journal records the saved files already hold. This file is
+    // written last, so the row appears only once every other file is saved.
+    public static boolean saveIdCounters(IdAllocator idAllocator, ChangeJournal.Position journalSaved, boolean verbose) {
+        ensureDataDirectoryExists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(ID_COUNTERS_FILE))) {
+            writer.println("Prefix,LastValue");
+            for (Map.Entry<String, Long> entry : idAllocator.snapshot().entrySet()) {
+                writer.println(escapeCSV(entry.getKey()) + "," + entry.getValue());
+            }
+            if (journalSaved != null) {
+                writer.println(ChangeJournal.HEADER + "," + journalSaved.generation + "," + journalSaved.records);
+            }
+            if (verbose) {
+                System.out.println(" ID counters saved to data/id_counters.csv");
+            }
+            return !writer.checkError();
+        } catch (IOException e) {
+            System.err.println(" Error saving ID counters: " + e.getMessage());
+            return false;
         }
     }
     
+    // Load ID allocator counters from CSV
+    public static void loadIdCounters(IdAllocator idAllocator) {
+        File file = new File(ID_COUNTERS_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine(); // Skip header
+            
+            while ((line = reader.readLine()) != null) {
+                String[] parts = parseCSVLine(line);
+                if (parts.length >= 2 && !parts[0].equals(ChangeJournal.HEADER)) {
+                    idAllocator.observe(parts[0], Long.parseLong(parts[1]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error loading ID counters: " + e.getMessage());
+        }
+    }
+    
+    // Journal records already in the CSV files (saved but not yet emptied from
+    // the journal when the process stopped), or null if none are recorded
+    public static ChangeJournal.Position loadSavedJournalPosition() {
+        File file = new File(ID_COUNTERS_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = parseCSVLine(line);
+                if (parts.length >= 3 && parts[0].equals(ChangeJournal.HEADER)) {
+                    return new ChangeJournal.Position(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error loading ID counters: " + e.getMessage());
+        }
+        return null;
+    }
+    
     // Save all data at once (silent mode)
-    public static void saveAllData(AppointmentManager manager) {
-        saveAllData(manager, false);
+    public static boolean saveAllData(AppointmentManager manager) {
+        return saveAllData(manager, false);
     }
     
-    // Save all data at once with verbose option
-    public static void saveAllData(AppointmentManager manager, boolean verbose) {
+    // Save all data at once with verbose option (one save at a time across threads);
+    // returns false if any file could not be written
+    public static synchronized boolean saveAllData(AppointmentManager manager, boolean verbose) {
         if (verbose) {
             System.out.println("\n SAVING ALL DATA TO CSV FILES...");
             System.out.println("=".repeat(50));
         }
         
+        manager.partitions.take(); // Every partition is about to be written
+        boolean saved = saveData(manager, EnumSet.allOf(EntityType.class), DataPartitions.Changes.everything(), verbose);
+        if (verbose) {
+            createConfigFile();
+            System.out.println("=".repeat(50));
+            System.out.println(saved ? " ALL DATA SUCCESSFULLY SAVED TO: data/" : " SOME DATA COULD NOT BE SAVED TO: data/");
+        }
+        return saved;
+    }
+    
+    // Rewrite only the files whose data changed (used by the background saver)
+    public static synchronized boolean saveChangedData(AppointmentManager manager, Set<EntityType> changed) {
+        return saveChangedData(manager, changed, manager.partitions.take());
+    }
+    
+    // Same, and in the partitioned layout only the partitions that changed;
+    // returns false if any file could not be written
+    public static synchronized boolean saveChangedData(AppointmentManager manager, Set<EntityType> changed, DataPartitions.Changes partitions) {
+        return changed.isEmpty() || saveData(manager, changed, partitions, false);
+    }
+    
+    // Every file is attempted even after one fails; returns false if any failed
+    private static boolean saveData(AppointmentManager manager, Set<EntityType> changed, DataPartitions.Changes partitions, boolean verbose) {
         // Ensure data directory exists
         ensureDataDirectoryExists();
         
-        // Get all doctors from the manager
-        List<Doctor> doctors = manager.getAvailableDoctors();
-        // Add doctors without available slots too
+        boolean saved = true;
+        if (changed.contains(EntityType.DOCTORS)) {
+            saved &= saveDoctors(collectDoctors(manager), verbose);
+        }
+        if (manager.partitions.enabled()) {
+            // Partition changes are recorded before the entity bit is set, so they may
+            // arrive one save early; they are written whenever they are taken
+            if (partitions.all || !partitions.patientRanges.isEmpty()) {
+                saved &= savePatientPartitions(manager, partitions, verbose);
+            }
+            if (partitions.all || !partitions.doctorIds.isEmpty()) {
+                saved &= saveAppointmentPartitions(manager, partitions, verbose);
+            }
+        } else {
+            if (changed.contains(EntityType.PATIENTS)) {
+                if (savePatients(collectPatients(manager), verbose)) {
+                    deletePartitions(PATIENT_PARTITIONS_DIR);
+                } else {
+                    saved = false;
+                }
+            }
+            if (changed.contains(EntityType.APPOINTMENTS)) {
+                if (saveAppointments(manager.appointments.snapshot(), verbose)) {
+                    deletePartitions(APPOINTMENT_PARTITIONS_DIR);
+                } else {
+                    saved = false;
+                }
+            }
+        }
+        if (changed.contains(EntityType.CANCELLATIONS)) {
+            saved &= saveCancellations(manager.cancellationHistory, manager.idAllocator, verbose);
+        }
+        if (changed.contains(EntityType.WAITLIST)) {
+            saved &= saveWaitlist(manager.rescheduleQueue, verbose);
+        }
+        // Every change may have handed out IDs, and the file is tiny. The journal
+        // position is recorded only when the files before it were all written.
+        return saveIdCounters(manager.idAllocator, saved ? manager.journalPosition() : null, verbose) && saved;
+    }
+    
+    // Doctors with free slots first, then fully booked ones, in one pass
+    static List<Doctor> collectDoctors(AppointmentManager manager) {
+        List<Doctor> doctors = new ArrayList<>();
+        List<Doctor> fullyBooked = new ArrayList<>();
         for (Doctor doctor : manager.getAllDoctors()) {
-            if (!doctors.contains(doctor)) {
+            if (doctor.hasAvailableSlots()) {
                 doctors.add(doctor);
+            } else {
+                fullyBooked.add(doctor);
             }
         }
-        
-        // Get all patients from appointments and reschedule queue
-        Set<Patient> patientSet = new HashSet<>();
-        for (Appointment appointment : manager.appointments) {
-            patientSet.add(appointment.getPatient());
+        doctors.addAll(fullyBooked);
+        return doctors;
+    }
+    
+    // Every registered patient, including those who never booked
+    static List<Patient> collectPatients(AppointmentManager manager) {
+        return new ArrayList<>(manager.patients);
+    }
+    
+    // Save a binary snapshot of all data for fast restarts
+    public static void saveSnapshot(AppointmentManager manager, boolean verbose) {
+        saveSnapshot(BinarySnapshot.capture(manager), verbose);
+    }
+    
+    // Move whole segments of old cancellations to data/cancellations/ (saves and checkpoints)
+    static void archiveCancellations(CancellationHistory cancellations, IdAllocator ids) {
+        try {
+            cancellations.archiveSpilled((number, appointment) -> cancellationRow(ids, number, appointment));
+        } catch (IOException e) {
+            System.err.println(" Error archiving cancellations: " + e.getMessage());
+        }
+    }
+    
+    // Save an image captured earlier (checkpoints); returns false if it could not be written
+    static synchronized boolean saveSnapshot(BinarySnapshot image, boolean verbose) {
+        ensureDataDirectoryExists();
+        try {
+            image.write(new File(SNAPSHOT_FILE));
+            if (verbose) {
+                System.out.println(" Binary snapshot saved to data/snapshot.bin");
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println(" Error saving snapshot: " + e.getMessage());
+            return false;
         }
-        for (Patient patient : manager.rescheduleQueue) {
-            patientSet.add(patient);
+    }
+    
+    // Load the binary snapshot if it was written after every CSV file, otherwise null
+    public static BinarySnapshot loadSnapshotIfCurrent() {
+        File snapshot = new File(SNAPSHOT_FILE);
+        if (!snapshot.exists()) {
+            return null;
         }
-        for (Appointment cancelledAppointment : manager.cancellationHistory) {
-            patientSet.add(cancelledAppointment.getPatient());
+        long snapshotTime = snapshot.lastModified();
+        if (newestPartition(APPOINTMENT_PARTITIONS_DIR) >= snapshotTime || newestPartition(PATIENT_PARTITIONS_DIR) >= snapshotTime) {
+            return null;
         }
-        
-        saveDoctors(doctors, verbose);
-        savePatients(new ArrayList<>(patientSet), verbose);
-        saveAppointments(manager.appointments, verbose);
-        saveCancellations(manager.cancellationHistory, verbose);
-        if (verbose) {
-            createConfigFile();
-            System.out.println("=".repeat(50));
-            System.out.println(" ALL DATA SUCCESSFULLY SAVED TO: data/");
+        for (String csv : new String[] { DOCTORS_FILE, PATIENTS_FILE, APPOINTMENTS_FILE, CANCELLATIONS_FILE, WAITLIST_FILE, ID_COUNTERS_FILE }) {
+            if (new File(csv).lastModified() >= snapshotTime) {
+                return null; // A CSV file may have changed after the snapshot
+            }
+        }
+        try {
+            return BinarySnapshot.read(snapshot);
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot, using CSV files: " + e.getMessage());
+            return null;
         }
     }
     
@@ -222,32 +644,8 @@ public class CSVManager {
             return doctors;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCSVLine(line);
-                if (parts.length >= 6) {
-                    String doctorId = parts[0];
-                    String registrationNumber = parts[1];
-                    String name = parts[2];
-                    String specialization = parts[3];
-                    double consultationFee = Double.parseDouble(parts[4]);
-                    
-                    // Parse available time slots
-                    List<String> timeSlots = new ArrayList<>();
-                    if (parts.length > 5 && !parts[5].isEmpty()) {
-                        String[] slots = parts[5].split(";");
-                        for (String slot : slots) {
-                            if (!slot.trim().isEmpty()) {
-                                timeSlots.add(slot.trim());
-                            }
-                        }
-                    }
-                    
-                    doctors.add(new Doctor(doctorId, registrationNumber, name, specialization, timeSlots, consultationFee));
-                }
-            }
+        try {
+            loader.load(file, CSVManager::parseDoctor, doctors);
         } catch (IOException | NumberFormatException e) {
             System.err.println("Error loading doctors: " + e.getMessage());
         }
@@ -259,28 +657,18 @@ public class CSVManager {
     public static List<Patient> loadPatients() {
         List<Patient> patients = new ArrayList<>();
         File file = new File(PATIENTS_FILE);
+        List<File> partitions = partitionsToLoad(PATIENT_PARTITIONS_DIR, PATIENTS_FILE);
         
-        if (!file.exists()) {
+        if (partitions == null && !file.exists()) {
             System.out.println(" No patients file found in data/. Starting fresh.");
             return patients;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCSVLine(line);
-                if (parts.length >= 7) {
-                    String patientId = parts[0];
-                    String name = parts[1];
-                    String mobile = parts[2];
-                    String email = parts[3];
-                    String city = parts[4];
-                    int age = Integer.parseInt(parts[5]);
-                    String medicalHistory = parts[6];
-                    
-                    patients.add(new Patient(patientId, name, mobile, email, city, age, medicalHistory));
-                }
+        try {
+            if (partitions != null) {
+                loader.loadAll(partitions, CSVManager::parsePatient, patients);
+            } else {
+                loader.load(file, CSVManager::parsePatient, patients);
             }
         } catch (IOException | NumberFormatException e) {
             System.err.println("Error loading patients: " + e.getMessage());
@@ -291,35 +679,57 @@ public class CSVManager {
     
     // Load appointments from CSV
     public static List<Appointment> loadAppointments(List<Doctor> doctors, List<Patient> patients) {
+        return loadAppointments(indexDoctorsById(doctors), indexPatientsById(patients));
+    }
+    
+    // Load appointments from CSV, resolving references through ID indexes
+    public static List<Appointment> loadAppointments(Map<String, Doctor> doctorsById, Map<String, Patient> patientsById) {
         List<Appointment> appointments = new ArrayList<>();
         File file = new File(APPOINTMENTS_FILE);
+        List<File> partitions = partitionsToLoad(APPOINTMENT_PARTITIONS_DIR, APPOINTMENTS_FILE);
         
-        if (!file.exists()) {
+        if (partitions == null && !file.exists()) {
             System.out.println(" No appointments file found in data/. Starting fresh.");
             return appointments;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Skip header
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCSVLine(line);
-                if (parts.length >= 8) {
-                    String appointmentId = parts[0];
-                    String patientId = parts[1];
-                    String doctorId = parts[3];
-                    String timeSlot = parts[6];
-                    
-                    // Find the doctor and patient objects
-                    Doctor doctor = findDoctorById(doctors, doctorId);
-                    Patient patient = findPatientById(patients, patientId);
-                    
-                    if (doctor != null && patient != null) {
-                        // Mark the time slot as booked for the doctor
-                        doctor.bookTimeSlot(timeSlot);
-                        appointments.add(new Appointment(appointmentId, patient, doctor, timeSlot));
-                    }
+        try {
+            ParallelCsvLoader.RowParser<Appointment> parser = fields -> {
+                if (fields.fieldCount() < 8) {
+                    return null;
+                }
+                
+                // Find the doctor and patient objects
+                Doctor doctor = doctorsById.get(fields.getString(3));
+                Patient patient = patientsById.get(fields.getString(1));
+                if (doctor == null || patient == null) {
+                    return null;
+                }
+                String appointmentId = fields.getString(0);
+                String timeSlot = timeSlot(doctor, fields, 6);
+                LocalDate date;
+                try {
+                    date = fields.fieldCount() > 8 ? parseDate(fields.getString(8)) : null;
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping appointment " + appointmentId + ": " + e.getMessage());
+                    return null;
+                }
+                if (date != null && SlotCalendar.parseSlot(timeSlot) < 0) {
+                    System.err.println("Skipping appointment " + appointmentId + ": dated slot is not a clock time: " + timeSlot);
+                    return null;
+                }
+                // Mark the time slot as booked for the doctor (safe from loader threads);
+                // dated bookings are claimed in the manager's BookingIndex instead
+                if (date == null) {
+                    doctor.bookTimeSlot(timeSlot);
                 }
+                return new Appointment(appointmentId, patient, doctor, timeSlot, date);
+            };
+            // Partitions (one per doctor) are parsed concurrently
+            if (partitions != null) {
+                loader.loadAll(partitions, parser, appointments);
+            } else {
+                loader.load(file, parser, appointments);
             }
         } catch (IOException | NumberFormatException e) {
             System.err.println("Error loading appointments: " + e.getMessage());
@@ -329,8 +739,19 @@ public class CSVManager {
     }
     
     // Load cancellations from CSV
-    public static Stack<Appointment> loadCancellations(List<Doctor> doctors, List<Patient> patients) {
-        Stack<Appointment> cancellations = new Stack<>();
+    public static List<Appointment> loadCancellations(List<Doctor> doctors, List<Patient> patients) {
+        return loadCancellations(indexDoctorsById(doctors), indexPatientsById(patients), 0);
+    }
+    
+    // Load cancellations from CSV, resolving references through ID indexes
+    public static List<Appointment> loadCancellations(Map<String, Doctor> doctorsById, Map<String, Patient> patientsById) {
+        return loadCancellations(doctorsById, patientsById, 0);
+    }
+    
+    // Load cancellations numbered after `archived`, oldest first. Rows at or below it
+    // are already in the archive (a save stopped between archiving and rewriting).
+    public static List<Appointment> loadCancellations(Map<String, Doctor> doctorsById, Map<String, Patient> patientsById, long archived) {
+        List<Appointment> cancellations = new ArrayList<>();
         File file = new File(CANCELLATIONS_FILE);
         
         if (!file.exists()) {
@@ -338,35 +759,30 @@ public class CSVManager {
             return cancellations;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine(); // Skip header
-            
-            // Store cancellations in a list first to maintain order
-            List<Appointment> cancellationList = new ArrayList<>();
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = parseCSVLine(line);
-                if (parts.length >= 10) {
-                    String appointmentId = parts[1];
-                    String patientId = parts[2];
-                    String doctorId = parts[4];
-                    String timeSlot = parts[7];
-                    
-                    // Find the doctor and patient objects
-                    Doctor doctor = findDoctorById(doctors, doctorId);
-                    Patient patient = findPatientById(patients, patientId);
-                    
-                    if (doctor != null && patient != null) {
-                        cancellationList.add(new Appointment(appointmentId, patient, doctor, timeSlot));
-                    }
+        try {
+            loader.load(file, fields -> {
+                if (fields.fieldCount() < 10) {
+                    return null;
                 }
-            }
-            
-            // Add to stack in reverse order to maintain the original order
-            for (Appointment appointment : cancellationList) {
-                cancellations.push(appointment);
-            }
-            
+                if (archived > 0 && Long.parseLong(fields.getString(9)) <= archived) {
+                    return null;
+                }
+                
+                // Find the doctor and patient objects
+                Doctor doctor = doctorsById.get(fields.getString(4));
+                Patient patient = patientsById.get(fields.getString(2));
+                if (doctor == null || patient == null) {
+                    return null;
+                }
+                LocalDate date;
+                try {
+                    date = fields.fieldCount() > 10 ? parseDate(fields.getString(10)) : null;
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping cancellation " + fields.getString(0) + ": " + e.getMessage());
+                    return null;
+                }
+                return new Appointment(fields.getString(1), patient, doctor, timeSlot(doctor, fields, 7), date);
+            }, cancellations);
         } catch (IOException | NumberFormatException e) {
             System.err.println("Error loading cancellations: " + e.getMessage());
         }
@@ -374,61 +790,179 @@ public class CSVManager {
         return cancellations;
     }
     
-    // Helper method to find doctor by ID
-    private static Doctor findDoctorById(List<Doctor> doctors, String doctorId) {
-        for (Doctor doctor : doctors) {
-            if (doctor.getDoctorId().equals(doctorId)) {
-                return doctor;
+    // Load the waitlist from CSV in wait order. Entries whose patient is unknown are
+    // dropped; an entry for a doctor that no longer exists keeps waiting for any
+    // slot of that doctor's specialization.
+    public static List<WaitlistEntry> loadWaitlist(Map<String, Doctor> doctorsById, Map<String, Patient> patientsById) {
+        List<WaitlistEntry> waitlist = new ArrayList<>();
+        File file = new File(WAITLIST_FILE);
+        if (!file.exists()) {
+            return waitlist;
+        }
+        
+        try {
+            loader.load(file, fields -> {
+                if (fields.fieldCount() < 7) {
+                    return null;
+                }
+                Patient patient = patientsById.get(fields.getString(1));
+                if (patient == null) {
+                    return null;
+                }
+                String doctorId = fields.getString(3);
+                String specialization = fields.getString(4);
+                if (!doctorId.isEmpty() && !doctorsById.containsKey(doctorId)) {
+                    doctorId = null;
+                }
+                List<String> slots = new ArrayList<>();
+                for (String slot : fields.getString(5).split(";")) {
+                    if (!slot.trim().isEmpty()) {
+                        slots.add(slot.trim());
+                    }
+                }
+                return new WaitlistEntry(fields.getString(0), patient, doctorId, specialization, slots, Long.parseLong(fields.getString(6)));
+            }, waitlist);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error loading waitlist: " + e.getMessage());
+        }
+        
+        return waitlist;
+    }
+    
+    // One doctors.csv record, or null if it has too few fields
+    private static Doctor parseDoctor(CsvTokenizer fields) {
+        if (fields.fieldCount() < 6) {
+            return null;
+        }
+        String doctorId = fields.getString(0);
+        String registrationNumber = fields.getString(1);
+        String name = fields.getString(2);
+        String specialization = fields.getString(3);
+        double consultationFee = fields.getDouble(4);
+        
+        // Parse available time slots
+        List<String> timeSlots = new ArrayList<>();
+        String slotField = fields.getString(5);
+        if (!slotField.isEmpty()) {
+            String[] slots = slotField.split(";");
+            for (String slot : slots) {
+                if (!slot.trim().isEmpty()) {
+                    timeSlots.add(slot.trim());
+                }
             }
         }
-        return null;
+        Doctor doctor = new Doctor(doctorId, registrationNumber, name, specialization, timeSlots, consultationFee);
+        // Files written before weekly templates: the listed (free) slots recur every day
+        if (fields.fieldCount() > 6) {
+            doctor.setWeeklySchedule(WeeklySchedule.parse(fields.getString(6)));
+        }
+        return doctor;
+    }
+    
+    // One patients.csv record, or null if it has too few fields
+    private static Patient parsePatient(CsvTokenizer fields) {
+        if (fields.fieldCount() < 7) {
+            return null;
+        }
+        String patientId = fields.getString(0);
+        String name = fields.getString(1);
+        String mobile = fields.getString(2);
+        String email = fields.getString(3);
+        String city = fields.getString(4);
+        int age = fields.getInt(5);
+        String medicalHistory = fields.getString(6);
+        return new Patient(patientId, name, mobile, email, city, age, medicalHistory);
+    }
+    
+    // Reuse the doctor's own slot label when the text matches, so loading a million
+    // appointments does not create a million copies of "09:00AM"
+    private static String timeSlot(Doctor doctor, CsvTokenizer fields, int field) {
+        String label = doctor.getSlotCalendar().labelFor(fields.view(field));
+        return label != null && fields.fieldEquals(field, label) ? label : fields.getString(field);
     }
     
-    // Helper method to find patient by ID
-    private static Patient findPatientById(List<Patient> patients, String patientId) {
+    // Build a doctor ID index once so each row resolves in O(1)
+    static Map<String, Doctor> indexDoctorsById(List<Doctor> doctors) {
+        Map<String, Doctor> index = new HashMap<>(doctors.size() * 2);
+        for (Doctor doctor : doctors) {
+            index.put(doctor.getDoctorId(), doctor);
+        }
+        return index;
+    }
+    
+    // Build a patient ID index once so each row resolves in O(1)
+    static Map<String, Patient> indexPatientsById(List<Patient> patients) {
+        Map<String, Patient> index = new HashMap<>(patients.size() * 2);
         for (Patient patient : patients) {
-            if (patient.getPatientId().equals(patientId)) {
-                return patient;
-            }
+            index.put(patient.getPatientId(), patient);
         }
-        return null;
+        return index;
     }
     
     // Utility method to escape CSV values
-    private static String escapeCSV(String value) {
+    static String escapeCSV(String value) {
         if (value == null) return "";
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
             return "\"" + value.replace("\"", "\"\"") + "\"";
         }
         return value;
     }
     
-    // Utility method to parse CSV line
-    private static String[] parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder current = new StringBuilder();
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
+    // Next record from a line-based file (journal, archive segments), or null at the
+    // end. Line breaks inside a quoted field belong to the record, as in the bulk loader.
+    static String readRecord(Reader reader) throws IOException {
+        StringBuilder record = new StringBuilder();
+        boolean quoted = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n' && !quoted) {
+                break;
+            }
             if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    current.append('"');
-                    i++; // Skip next quote
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                result.add(current.toString());
-                current = new StringBuilder();
-            } else {
-                current.append(c);
+                quoted = !quoted;
             }
+            record.append((char) c);
         }
-        
-        result.add(current.toString());
-        return result.toArray(new String[0]);
+        if (c == -1 && record.length() == 0) {
+            return null;
+        }
+        int end = record.length();
+        if (!quoted && end > 0 && record.charAt(end - 1) == '\r') {
+            record.setLength(end - 1); // Written on Windows
+        }
+        return record.toString();
+    }
+    
+    // Utility method to parse CSV line (bulk loads read fields through CsvTokenizer instead)
+    static String[] parseCSVLine(String line) {
+        return TOKENIZER.get().reset(line).toArray();
+    }
+    
+    // Journal file used by the JOURNAL persistence mode
+    public static File getJournalFile() {
+        return new File(JOURNAL_FILE);
+    }
+    
+    // Data files rewritten in place by offline tools (PatientDeduplicator)
+    static File getAppointmentsFile() {
+        return new File(APPOINTMENTS_FILE);
+    }
+    
+    static File getCancellationsFile() {
+        return new File(CANCELLATIONS_FILE);
+    }
+    
+    static File getWaitlistFile() {
+        return new File(WAITLIST_FILE);
+    }
+    
+    static File getSnapshotFile() {
+        return new File(SNAPSHOT_FILE);
+    }
+    
+    // Archive segments of old cancellations
+    static File getCancellationArchiveDir() {
+        return new File(CANCELLATION_ARCHIVE_DIR);
     }
     
     // Create a configuration file documenting the data structure
@@ -447,14 +981,26 @@ public class CSVManager {
             writer.println(" doctors.csv      - Doctor information and available slots");
             writer.println(" patients.csv     - Patient details and medical history");
             writer.println(" appointments.csv - Active appointment records");
-            writer.println(" cancellations.csv- Cancelled appointment history");
+            writer.println(" cancellations.csv- Recent cancelled appointment history");
+            writer.println(" cancellations/   - Older cancellations in archive segments");
+            writer.println(" appointments/    - One file per doctor (partitioned layout only)");
+            writer.println(" patients/        - One file per patient ID range (partitioned layout only)");
+            writer.println(" waitlist.csv     - Patients waiting for a slot and the slots they accept");
+            writer.println(" journal.log      - Changes since the last full save (journal mode only)");
+            writer.println(" id_counters.csv  - Last ID handed out for each prefix (DOC, PAT, APT, CAN)");
+            writer.println(" snapshot.bin     - Binary copy of all data for fast restarts");
             writer.println(" README.txt       - This configuration file");
             writer.println();
             writer.println(" FILE DESCRIPTIONS:");
-            writer.println("doctors.csv     : Contains doctor ID, name, specialization, fees, and available time slots");
+            writer.println("doctors.csv     : Contains doctor ID, name, specialization, fees, available time slots and weekly template");
             writer.println("patients.csv    : Contains patient name, contact info, age, city, and medical history");
-            writer.println("appointments.csv: Contains current appointments with patient-doctor-time mappings");
+            writer.println("appointments.csv: Contains current appointments with patient-doctor-time mappings (and date, if dated)");
             writer.println("cancellations.csv: Contains history of cancelled appointments for audit trail");
+            writer.println("cancellations/  : segment-<first>-<last>.csv.gz files, never rewritten once written");
+            writer.println("waitlist.csv    : Contains each waiting patient's doctor or specialization, slots and wait start");
+            writer.println("journal.log     : One record per change, replayed on top of the CSV files at startup");
+            writer.println("id_counters.csv : Keeps generated IDs unique even after records are removed");
+            writer.println("snapshot.bin    : Loaded instead of the CSV files when it is newer than all of them");
             writer.println();
             writer.println(" USAGE:");
             writer.println("- All files are automatically created and updated by the system");
@@ -482,6 +1028,15 @@ public class CSVManager {
         System.out.println(" Patients: data/patients.csv");
         System.out.println(" Appointments: data/appointments.csv");
         System.out.println(" Cancellations: data/cancellations.csv");
+        System.out.println(" Cancellation Archive: data/cancellations/");
+        if (DataPartitions.isEnabled()) {
+            System.out.println(" Appointment Partitions: data/appointments/");
+            System.out.println(" Patient Partitions: data/patients/");
+        }
+        System.out.println(" Waitlist: data/waitlist.csv");
+        System.out.println(" Journal: data/journal.log");
+        System.out.println(" ID Counters: data/id_counters.csv");
+        System.out.println(" Snapshot: data/snapshot.bin");
         System.out.println("=".repeat(50));
     }
 }
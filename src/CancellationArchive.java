@@ -0,0 +1,205 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Append-only archive of old cancellations under data/cancellations/. Each
+// segment file holds a contiguous range of cancellation numbers in the
+// cancellations.csv row format and is never rewritten once it exists:
+//   segment-<first>-<last>.csv     or, compressed,     segment-<first>-<last>.csv.gz
+// Only segment names are kept in memory; rows are read back one segment at a
+// time when an old page of history is viewed.
+public class CancellationArchive {
+    private static final String PREFIX = "segment-";
+
+    private final File directory;
+    private final boolean compress;
+    private final List<long[]> ranges = new ArrayList<>(); // { first, last } in order
+    private final List<File> files = new ArrayList<>();
+    private int cachedSegment = -1; // Last segment read, for paging through it
+    private List<String[]> cachedRows;
+
+    public CancellationArchive(File directory, boolean compress) {
+        this.directory = directory;
+        this.compress = compress;
+        File[] existing = directory.listFiles((dir, name) -> name.startsWith(PREFIX));
+        if (existing != null) {
+            Arrays.sort(existing, Comparator.comparingLong(CancellationArchive::firstOf));
+            for (File file : existing) {
+                long first = firstOf(file);
+                long last = lastOf(file);
+                if (first > 0 && last >= first && first > lastSequence()) {
+                    ranges.add(new long[] { first, last });
+                    files.add(file);
+                }
+            }
+        }
+    }
+
+    // Compression is on unless -Dhospital.cancellations.compress=false
+    public static CancellationArchive fromSystemProperty(File directory) {
+        return new CancellationArchive(directory, !"false".equalsIgnoreCase(System.getProperty("hospital.cancellations.compress", "true")));
+    }
+
+    // Number of the newest archived cancellation (0 when the archive is empty)
+    public synchronized long lastSequence() {
+        return ranges.isEmpty() ? 0 : ranges.get(ranges.size() - 1)[1];
+    }
+
+    public synchronized int segmentCount() {
+        return ranges.size();
+    }
+
+    // Write rows numbered first..first+rows.size()-1 as one new segment. The file
+    // appears atomically, so a reader never sees a partial segment.
+    public void append(long first, List<String> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long last = first + rows.size() - 1;
+        synchronized (this) {
+            if (first != lastSequence() + 1) {
+                throw new IOException("Archive segment starting at " + first + " does not follow " + lastSequence());
+            }
+        }
+        Files.createDirectories(directory.toPath());
+        File file = new File(directory, PREFIX + first + "-" + last + (compress ? ".csv.gz" : ".csv"));
+        Path temp = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(open(temp), StandardCharsets.UTF_8))) {
+            for (String row : rows) {
+                writer.write(row);
+                writer.write('\n');
+            }
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            ranges.add(new long[] { first, last });
+            files.add(file);
+        }
+    }
+
+    // The row for one cancellation number, or null if it is not archived
+    public synchronized String[] read(long sequence) throws IOException {
+        int segment = segmentOf(sequence);
+        if (segment < 0) {
+            return null;
+        }
+        if (segment != cachedSegment) {
+            cachedRows = readSegment(files.get(segment));
+            cachedSegment = segment;
+        }
+        int index = (int) (sequence - ranges.get(segment)[0]);
+        return index < cachedRows.size() ? cachedRows.get(index) : null;
+    }
+
+    // Offline maintenance only (PatientDeduplicator): update rows in place, one
+    // segment at a time. update changes a row and returns true if it did.
+    // Returns the number of rows changed.
+    public synchronized int rewriteRows(Predicate<String[]> update) throws IOException {
+        int changed = 0;
+        for (File file : files) {
+            List<String[]> rows = readSegment(file);
+            int changedInSegment = 0;
+            for (String[] row : rows) {
+                if (update.test(row)) {
+                    changedInSegment++;
+                }
+            }
+            if (changedInSegment == 0) {
+                continue;
+            }
+            Path temp = file.toPath().resolveSibling(file.getName() + ".tmp");
+            OutputStream out = Files.newOutputStream(temp);
+            if (file.getName().endsWith(".gz")) {
+                out = new GZIPOutputStream(out, 1 << 16);
+            }
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                for (String[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(CSVManager.escapeCSV(row[i]));
+                    }
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            changed += changedInSegment;
+        }
+        cachedSegment = -1;
+        cachedRows = null;
+        return changed;
+    }
+
+    // Binary search over segment ranges
+    private int segmentOf(long sequence) {
+        int low = 0;
+        int high = ranges.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long[] range = ranges.get(mid);
+            if (sequence < range[0]) {
+                high = mid - 1;
+            } else if (sequence > range[1]) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private OutputStream open(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        return compress ? new GZIPOutputStream(out, 1 << 16) : out;
+    }
+
+    private static List<String[]> readSegment(File file) throws IOException {
+        InputStream in = Files.newInputStream(file.toPath());
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        List<String[]> rows = new ArrayList<>();
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String row;
+            while ((row = CSVManager.readRecord(reader)) != null) {
+                rows.add(tokenizer.reset(row).toArray());
+            }
+        }
+        return rows;
+    }
+
+    // segment-<first>-<last>.csv[.gz]; 0 / -1 if the name does not parse
+    private static long firstOf(File file) {
+        String[] parts = rangeOf(file);
+        return parts == null ? 0 : parseOrZero(parts[0]);
+    }
+
+    private static long lastOf(File file) {
+        String[] parts = rangeOf(file);
+        return parts == null ? -1 : parseOrZero(parts[1]);
+    }
+
+    private static String[] rangeOf(File file) {
+        String name = file.getName();
+        int end = name.indexOf(".csv");
+        if (end < 0 || name.endsWith(".tmp")) {
+            return null;
+        }
+        String[] parts = name.substring(PREFIX.length(), end).split("-");
+        return parts.length == 2 ? parts : null;
+    }
+
+    private static long parseOrZero(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+// Cancellation history with bounded memory. Every cancellation gets the next
+// number (1, 2, 3, ...). The newest `capacity` are kept in a ring buffer; older
+// ones wait in a spill list until a save moves them to the on-disk archive in
+// whole segments, so heap use and the size of cancellations.csv stay flat no
+// matter how much history accumulates. Without an archive (memory-only mode)
+// spilled cancellations are counted but not kept.
+// Pages are read newest first straight from the ring, the spill list or one
+// archive segment; nothing is copied or reversed as a whole.
+// All methods are synchronized; this replaces the former synchronized Stack.
+public class CancellationHistory implements Iterable<Appointment> {
+    private final Appointment[] ring;
+    private int ringStart; // Index of the oldest cancellation in the ring
+    private int ringCount;
+    private final List<Appointment> spilled = new ArrayList<>(); // Older than the ring, not yet archived
+    private final CancellationArchive archive;                   // null = spilled cancellations are dropped
+    private final Function<String[], Appointment> rowReader;     // Turns an archived row back into an Appointment
+    private final Object archiveLock = new Object();             // One archiveSpilled at a time (saves, checkpoints)
+    private long firstInMemory = 1; // Number of the oldest cancellation still in memory
+    private long lastNumber;        // Number of the newest cancellation (= total count)
+
+    public CancellationHistory(int capacity, CancellationArchive archive, Function<String[], Appointment> rowReader) {
+        this.ring = new Appointment[Math.max(1, capacity)];
+        this.archive = archive;
+        this.rowReader = rowReader;
+        if (archive != null) {
+            firstInMemory = archive.lastSequence() + 1;
+            lastNumber = archive.lastSequence();
+        }
+    }
+
+    // Ring size comes from -Dhospital.cancellations.recent (default 1000)
+    public static int capacityFromSystemProperty() {
+        return Math.max(1, Integer.getInteger("hospital.cancellations.recent", 1000));
+    }
+
+    // Record a cancellation; returns its number
+    public synchronized long push(Appointment appointment) {
+        if (ringCount == ring.length) {
+            Appointment oldest = ring[ringStart];
+            ring[ringStart] = null;
+            ringStart = (ringStart + 1) % ring.length;
+            ringCount--;
+            if (archive != null) {
+                spilled.add(oldest);
+            } else {
+                firstInMemory++;
+            }
+        }
+        ring[(ringStart + ringCount) % ring.length] = appointment;
+        ringCount++;
+        return ++lastNumber;
+    }
+
+    // Add loaded cancellations, oldest first
+    public synchronized void addAll(Collection<Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            push(appointment);
+        }
+    }
+
+    // Total number of cancellations ever recorded, archived ones included
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, lastNumber);
+    }
+
+    public synchronized boolean isEmpty() {
+        return lastNumber == 0;
+    }
+
+    // Number of cancellations held in memory
+    public synchronized int inMemoryCount() {
+        return spilled.size() + ringCount;
+    }
+
+    // Up to limit cancellations, newest first, after skipping the newest `offset`
+    public synchronized List<Appointment> newest(long offset, int limit) {
+        List<Appointment> page = new ArrayList<>(Math.max(0, limit));
+        for (long number = lastNumber - offset; number >= 1 && page.size() < limit; number--) {
+            Appointment appointment = get(number);
+            if (appointment == null) {
+                break; // Older cancellations were not kept (memory-only mode)
+            }
+            page.add(appointment);
+        }
+        return page;
+    }
+
+    // Cancellation by number, or null if it is not available
+    public synchronized Appointment get(long number) {
+        if (number > lastNumber || number < 1) {
+            return null;
+        }
+        if (number >= firstInMemory) {
+            int index = (int) (number - firstInMemory);
+            if (index < spilled.size()) {
+                return spilled.get(index);
+            }
+            return ring[(ringStart + index - spilled.size()) % ring.length];
+        }
+        if (archive == null) {
+            return null;
+        }
+        try {
+            String[] row = archive.read(number);
+            return row == null ? null : rowReader.apply(row);
+        } catch (IOException e) {
+            System.err.println(" Error reading cancellation archive: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Cancellations in memory, oldest first; returns the number of the first one
+    public synchronized long copyInMemory(List<Appointment> into) {
+        into.addAll(spilled);
+        for (int i = 0; i < ringCount; i++) {
+            into.add(ring[(ringStart + i) % ring.length]);
+        }
+        return firstInMemory;
+    }
+
+    // Move spilled cancellations to the archive in segments the size of the ring;
+    // a partial segment stays in memory (and in cancellations.csv) until it fills.
+    // formatRow turns (number, appointment) into a cancellations.csv row.
+    public void archiveSpilled(RowFormatter formatRow) throws IOException {
+        if (archive == null) {
+            return;
+        }
+        synchronized (archiveLock) {
+            archiveSegments(formatRow);
+        }
+    }
+
+    private void archiveSegments(RowFormatter formatRow) throws IOException {
+        int segmentSize = ring.length;
+        while (true) {
+            long first;
+            List<String> rows = new ArrayList<>(segmentSize);
+            synchronized (this) {
+                if (spilled.size() < segmentSize) {
+                    return;
+                }
+                first = firstInMemory;
+                for (int i = 0; i < segmentSize; i++) {
+                    rows.add(formatRow.format(first + i, spilled.get(i)));
+                }
+            }
+            // Written outside the lock; only the archiveLock holder removes from the front
+            archive.append(first, rows);
+            synchronized (this) {
+                spilled.subList(0, segmentSize).clear();
+                firstInMemory += segmentSize;
+            }
+        }
+    }
+
+    // In-memory cancellations, oldest first (a copy)
+    @Override
+    public Iterator<Appointment> iterator() {
+        List<Appointment> copy = new ArrayList<>();
+        copyInMemory(copy);
+        return Collections.unmodifiableList(copy).iterator();
+    }
+
+    @FunctionalInterface
+    public interface RowFormatter {
+        String format(long number, Appointment appointment);
+    }
+}
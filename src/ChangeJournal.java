@@ -0,0 +1,323 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Append-only journal of mutations. Each change is one CSV line, so booking cost
+// does not depend on how much data already exists. Records are buffered and a
+// background thread writes and syncs them together (group commit). append()
+// does not wait for that: a record is durable up to commitIntervalMs (plus the
+// sync) after it returns, so a crash can lose the changes of that window.
+// Call flush() where a change must be durable before going on.
+// The first line names the journal's generation, which changes whenever records
+// are discarded; a checkpoint stores (generation, record count) so that at
+// startup only the records after it are replayed. A full CSV save stores the
+// same pair in id_counters.csv, in case the process stops before the journal
+// is emptied. Files without that line are generation 0.
+public class ChangeJournal {
+    public static final String DOCTOR_REGISTERED = "DOCTOR_REGISTERED";
+    public static final String APPOINTMENT_BOOKED = "APPOINTMENT_BOOKED";
+    public static final String APPOINTMENT_CANCELLED = "APPOINTMENT_CANCELLED";
+    public static final String PATIENT_REGISTERED = "PATIENT_REGISTERED";
+    public static final String PATIENT_QUEUED = "PATIENT_QUEUED";
+    public static final String PATIENT_DEQUEUED = "PATIENT_DEQUEUED";
+    static final String HEADER = "JOURNAL"; // JOURNAL,<generation>[,checkpoint]
+    static final String AFTER_CHECKPOINT = "checkpoint"; // The records before were dropped by a checkpoint
+
+    private final File file;
+    private final long commitIntervalMs;
+    private final Object bufferLock = new Object(); // Guards pending, generation and records
+    private final Object fileLock = new Object();   // Serializes writes to the file
+    private StringBuilder pending = new StringBuilder();
+    private long generation;
+    private long records;        // Appended in this generation, including pending ones
+    private long pendingRecords; // Appended but not yet written
+    private FileOutputStream out;
+    private Thread flusher;
+    private Thread shutdownFlush; // Registered while open
+    private volatile boolean closed;
+
+    public ChangeJournal(File file, long commitIntervalMs) {
+        this.file = file;
+        this.commitIntervalMs = commitIntervalMs;
+    }
+
+    // A point in the journal: the first records of a generation
+    static final class Position {
+        final long generation;
+        final long records;
+
+        Position(long generation, long records) {
+            this.generation = generation;
+            this.records = records;
+        }
+    }
+
+    // First line of a journal file; generation 0 and not after a checkpoint if absent
+    static final class Header {
+        final long generation;
+        final boolean afterCheckpoint;
+
+        Header(long generation, boolean afterCheckpoint) {
+            this.generation = generation;
+            this.afterCheckpoint = afterCheckpoint;
+        }
+    }
+
+    // Open the journal for appending and start the group commit thread
+    public void open() throws IOException {
+        boolean empty = file.length() == 0;
+        generation = empty ? nextGeneration(0) : readHeader(file).generation;
+        records = empty ? 0 : countRecords(file);
+        out = new FileOutputStream(file, true);
+        if (empty) {
+            try {
+                out.write(headerLine(generation, false).getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            } catch (IOException e) {
+                out.close();
+                out = null;
+                throw e;
+            }
+        }
+        flusher = new Thread(this::runFlusher, "journal-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+        // Records still buffered when the JVM exits are written by this hook
+        shutdownFlush = new Thread(this::flush, "journal-shutdown-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownFlush);
+    }
+
+    // Queue one record and return without waiting; it becomes durable at the
+    // next group commit (or flush())
+    public void append(String type, String... fields) {
+        StringBuilder line = new StringBuilder(type);
+        for (String field : fields) {
+            line.append(',').append(CSVManager.escapeCSV(field));
+        }
+        line.append('\n');
+        synchronized (bufferLock) {
+            records++;
+            pendingRecords++;
+            pending.append(line);
+            bufferLock.notifyAll();
+        }
+    }
+
+    // Write and sync everything appended so far
+    public void flush() {
+        synchronized (fileLock) {
+            String batch;
+            synchronized (bufferLock) {
+                if (pending.length() == 0 || out == null) {
+                    return;
+                }
+                batch = pending.toString();
+                pending = new StringBuilder();
+                pendingRecords = 0;
+            }
+            try {
+                out.write(batch.getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            } catch (IOException e) {
+                System.err.println(" Error writing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Everything appended so far; exact only while no change is being appended
+    public Position position() {
+        synchronized (bufferLock) {
+            return new Position(generation, records);
+        }
+    }
+
+    // Discard all records once their effects are saved in the CSV files
+    public void truncate() {
+        synchronized (fileLock) {
+            flush();
+            if (out == null) {
+                return;
+            }
+            try {
+                long next = nextGeneration(generation);
+                out.getChannel().truncate(0);
+                out.write(headerLine(next, false).getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+                synchronized (bufferLock) {
+                    generation = next;
+                    records = pendingRecords; // Appended since flush(); written to the new generation
+                }
+            } catch (IOException e) {
+                System.err.println(" Error truncating journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Discard the records before a position once a checkpoint holds their effects.
+    // The records after it are copied to a new file that replaces this one, so the
+    // journal is never without them. Does nothing if the journal has been
+    // emptied or trimmed since the position was taken.
+    public void dropBefore(Position position) {
+        synchronized (fileLock) {
+            flush();
+            if (out == null || position.generation != generation) {
+                return;
+            }
+            Path target = file.toPath();
+            Path temp = target.resolveSibling(file.getName() + ".tmp");
+            long next = nextGeneration(generation);
+            try {
+                try (BufferedReader reader = Files.newBufferedReader(target, StandardCharsets.UTF_8);
+                     FileOutputStream tempOut = new FileOutputStream(temp.toFile())) {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(tempOut, StandardCharsets.UTF_8));
+                    writer.write(headerLine(next, true));
+                    long skipped = 0;
+                    String record;
+                    while ((record = CSVManager.readRecord(reader)) != null) {
+                        if (record.isEmpty() || isHeader(record) || skipped++ < position.records) {
+                            continue;
+                        }
+                        writer.write(record);
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                    tempOut.getFD().sync();
+                }
+                out.close();
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                synchronized (bufferLock) {
+                    generation = next;
+                    records -= position.records;
+                }
+            } catch (IOException e) {
+                System.err.println(" Error trimming journal: " + e.getMessage());
+            } finally {
+                try {
+                    out = new FileOutputStream(file, true); // The new file, or the old one if it was kept
+                } catch (IOException e) {
+                    System.err.println(" Error reopening journal: " + e.getMessage());
+                    out = null;
+                }
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (bufferLock) {
+            bufferLock.notifyAll();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            flush();
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                System.err.println(" Error closing journal: " + e.getMessage());
+            }
+            out = null;
+        }
+        if (shutdownFlush != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException e) {
+                // Closed by another shutdown hook; this one finds nothing to flush
+            }
+            shutdownFlush = null;
+        }
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            synchronized (bufferLock) {
+                while (pending.length() == 0 && !closed) {
+                    try {
+                        bufferLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            // Give concurrent bookings a chance to join this commit
+            try {
+                Thread.sleep(commitIntervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    // Read all records in the order they were appended; a quoted field may span lines
+    public static List<String[]> readRecords(File file) {
+        List<String[]> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String record;
+            while ((record = CSVManager.readRecord(reader)) != null) {
+                if (!record.isEmpty() && !isHeader(record)) {
+                    records.add(CSVManager.parseCSVLine(record));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+        }
+        return records;
+    }
+
+    private static long countRecords(File file) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String record;
+            while ((record = CSVManager.readRecord(reader)) != null) {
+                if (!record.isEmpty() && !isHeader(record)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    static Header readHeader(File file) {
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                if (line != null && isHeader(line)) {
+                    String[] fields = line.split(",");
+                    return new Header(Long.parseLong(fields[1]), fields.length > 2 && AFTER_CHECKPOINT.equals(fields[2]));
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error reading journal header: " + e.getMessage());
+            }
+        }
+        return new Header(0, false);
+    }
+
+    private static boolean isHeader(String line) {
+        return line.startsWith(HEADER + ",");
+    }
+
+    private static String headerLine(long generation, boolean afterCheckpoint) {
+        return HEADER + "," + generation + (afterCheckpoint ? "," + AFTER_CHECKPOINT : "") + "\n";
+    }
+
+    // Generations only grow, and a new or recreated file never reuses an old one
+    private static long nextGeneration(long previous) {
+        return Math.max(System.currentTimeMillis(), previous + 1);
+    }
+}
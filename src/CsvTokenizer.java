@@ -0,0 +1,247 @@
+import java.util.Arrays;
+
+// Splits one CSV record into fields without allocating. The tokenizer only
+// records where each field starts and ends in the caller's char buffer;
+// numbers are parsed straight from the buffer and a String is created only
+// when getString is called for a field that is kept.
+// Quoting follows parseCSVLine: a '"' toggles quoting anywhere in a field and
+// "" inside quotes is a literal quote. One instance per thread; reset per record.
+public class CsvTokenizer {
+    // Every power of ten a double holds exactly
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private char[] chars;
+    private char[] lineBuffer = new char[64]; // Owned copy used by reset(String)
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16]; // Field contains quote characters
+    private int fieldCount;
+    private final FieldView view = new FieldView();
+
+    // Tokenize chars[start, end) in place; the buffer must not change while fields are read
+    public CsvTokenizer reset(char[] buffer, int start, int end) {
+        chars = buffer;
+        fieldCount = 0;
+        boolean inQuotes = false;
+        boolean hasQuotes = false;
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                hasQuotes = true;
+                if (inQuotes && i + 1 < end && buffer[i + 1] == '"') {
+                    i++; // Escaped quote
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (c == ',' && !inQuotes) {
+                addField(fieldStart, i, hasQuotes);
+                fieldStart = i + 1;
+                hasQuotes = false;
+            }
+        }
+        addField(fieldStart, end, hasQuotes);
+        return this;
+    }
+
+    // Tokenize a whole line; the characters are copied into a reused buffer
+    public CsvTokenizer reset(String line) {
+        if (lineBuffer.length < line.length()) {
+            lineBuffer = new char[line.length() * 2];
+        }
+        line.getChars(0, line.length(), lineBuffer, 0);
+        return reset(lineBuffer, 0, line.length());
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int fieldStart(int field) {
+        return starts[checkField(field)];
+    }
+
+    public int fieldEnd(int field) {
+        return ends[checkField(field)];
+    }
+
+    public boolean isEmpty(int field) {
+        return starts[checkField(field)] == ends[field];
+    }
+
+    // The field's value with quoting removed
+    public String getString(int field) {
+        int start = starts[checkField(field)];
+        int end = ends[field];
+        if (!quoted[field]) {
+            return new String(chars, start, end - start);
+        }
+        return unquote(start, end);
+    }
+
+    // Same result as Integer.parseInt(getString(field)) without creating the String
+    public int getInt(int field) {
+        int start = starts[checkField(field)];
+        int end = ends[field];
+        if (quoted[field] || end - start > 9 || start == end) {
+            return Integer.parseInt(getString(field)); // Rare shapes keep the exact JDK rules
+        }
+        int pos = start;
+        boolean negative = false;
+        if (chars[pos] == '-' || chars[pos] == '+') {
+            negative = chars[pos] == '-';
+            pos++;
+        }
+        int value = 0;
+        for (; pos < end; pos++) {
+            int digit = chars[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(getString(field)); // Throws, or accepts non-ASCII digits
+            }
+            value = value * 10 + digit;
+        }
+        if (pos == start + 1 && (chars[start] == '-' || chars[start] == '+')) {
+            return Integer.parseInt(getString(field)); // Sign without digits
+        }
+        return negative ? -value : value;
+    }
+
+    // Same result as Double.parseDouble(getString(field)). Plain decimals such as
+    // "2500.00" are converted exactly from the buffer; anything else falls back to the JDK.
+    public double getDouble(int field) {
+        int start = starts[checkField(field)];
+        int end = ends[field];
+        int pos = start;
+        boolean negative = false;
+        if (!quoted[field] && pos < end && (chars[pos] == '-' || chars[pos] == '+')) {
+            negative = chars[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean plain = !quoted[field] && pos < end;
+        for (; plain && pos < end; pos++) {
+            char c = chars[pos];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                plain = false;
+            }
+        }
+        // Exact when the digits fit in a double's mantissa and 10^n is itself exact
+        if (plain && digits > 0 && digits <= 15 && fractionDigits <= 22) {
+            double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(getString(field));
+    }
+
+    // The raw characters of a field as a reused CharSequence (valid until the next call)
+    public CharSequence view(int field) {
+        view.start = starts[checkField(field)];
+        view.end = ends[field];
+        return view;
+    }
+
+    // True if the field's value equals value, without creating a String
+    public boolean fieldEquals(int field, String value) {
+        if (quoted[checkField(field)]) {
+            return getString(field).equals(value);
+        }
+        return value != null && value.contentEquals(view(field));
+    }
+
+    // Fields as Strings, like parseCSVLine
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
+
+    private void addField(int start, int end, boolean hasQuotes) {
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            quoted = Arrays.copyOf(quoted, capacity);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        quoted[fieldCount] = hasQuotes;
+        fieldCount++;
+    }
+
+    private String unquote(int start, int end) {
+        // Common case: the whole field is wrapped in quotes with none inside
+        if (end - start >= 2 && chars[start] == '"' && chars[end - 1] == '"') {
+            boolean inner = false;
+            for (int i = start + 1; i < end - 1 && !inner; i++) {
+                inner = chars[i] == '"';
+            }
+            if (!inner) {
+                return new String(chars, start + 1, end - start - 2);
+            }
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        boolean inQuotes = false;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == '"') {
+                if (inQuotes && i + 1 < end && chars[i + 1] == '"') {
+                    value.append('"');
+                    i++; // Skip next quote
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    private class FieldView implements CharSequence {
+        int start;
+        int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(chars, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+    }
+
+    private int checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fieldCount);
+        }
+        return field;
+    }
+}
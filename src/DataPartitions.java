@@ -0,0 +1,140 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Optional partitioned layout of the data directory (-Dhospital.data.layout=partitioned).
+// Appointments are stored one file per doctor (data/appointments/<doctor ID>.csv)
+// and patients one file per ID range (data/patients/PAT-10000.csv holds PAT010000
+// to PAT019999 with the default -Dhospital.data.patientsPerPartition=10000).
+// AppointmentManager records which partitions a change touched, so a save
+// rewrites only those files instead of all of appointments.csv or patients.csv.
+// Partitions are loaded in parallel at startup.
+public class DataPartitions {
+    static final String NO_RANGE = "other"; // Patient IDs that do not end in a number
+
+    private final boolean enabled;
+    private final int patientsPerPartition;
+    private final Set<String> dirtyDoctors = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyPatientRanges = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rewriteAll = new AtomicBoolean();
+
+    // Partitions touched since the last save; all = every partition must be written
+    static class Changes {
+        final boolean all;
+        final Set<String> doctorIds;
+        final Set<String> patientRanges;
+
+        Changes(boolean all, Set<String> doctorIds, Set<String> patientRanges) {
+            this.all = all;
+            this.doctorIds = doctorIds;
+            this.patientRanges = patientRanges;
+        }
+
+        static Changes everything() {
+            return new Changes(true, Collections.emptySet(), Collections.emptySet());
+        }
+    }
+
+    public DataPartitions(boolean enabled, int patientsPerPartition) {
+        this.enabled = enabled;
+        this.patientsPerPartition = Math.max(1, patientsPerPartition);
+    }
+
+    public static DataPartitions fromSystemProperty() {
+        return new DataPartitions(isEnabled(), patientsPerPartitionFromSystemProperty());
+    }
+
+    // The layout is flat (one file per entity) unless -Dhospital.data.layout=partitioned
+    public static boolean isEnabled() {
+        return "partitioned".equalsIgnoreCase(System.getProperty("hospital.data.layout", "flat"));
+    }
+
+    static int patientsPerPartitionFromSystemProperty() {
+        return Integer.getInteger("hospital.data.patientsPerPartition", 10000);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int patientsPerPartition() {
+        return patientsPerPartition;
+    }
+
+    // Call after the change is visible and before the save is scheduled
+    public void appointmentsChanged(String doctorId) {
+        if (enabled) {
+            dirtyDoctors.add(doctorId);
+        }
+    }
+
+    public void patientChanged(String patientId) {
+        if (enabled) {
+            dirtyPatientRanges.add(patientRange(patientId, patientsPerPartition));
+        }
+    }
+
+    // The next save writes every partition (data was loaded from the flat layout)
+    public void rewriteAll() {
+        if (enabled) {
+            rewriteAll.set(true);
+        }
+    }
+
+    // Partitions changed since the last call; a change made meanwhile is kept for the next
+    public Changes take() {
+        return new Changes(rewriteAll.getAndSet(false), drain(dirtyDoctors), drain(dirtyPatientRanges));
+    }
+
+    // Mark partitions taken for a save that failed as changed again, for the next save
+    public void restore(Changes changes) {
+        if (changes.all) {
+            rewriteAll.set(true);
+        }
+        dirtyDoctors.addAll(changes.doctorIds);
+        dirtyPatientRanges.addAll(changes.patientRanges);
+    }
+
+    private static Set<String> drain(Set<String> dirty) {
+        Set<String> taken = new TreeSet<>();
+        for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+            taken.add(it.next());
+            it.remove();
+        }
+        return taken;
+    }
+
+    // Partition name for a patient ID: the ID's prefix and the first number of its
+    // range ("PAT012345" -> "PAT-10000"), or NO_RANGE
+    static String patientRange(String patientId, int patientsPerPartition) {
+        int digits = patientId.length();
+        while (digits > 0 && Character.isDigit(patientId.charAt(digits - 1))) {
+            digits--;
+        }
+        if (digits == patientId.length() || patientId.length() - digits > 18) {
+            return NO_RANGE;
+        }
+        long number = Long.parseLong(patientId.substring(digits));
+        String prefix = digits == 0 ? "" : fileSafe(patientId.substring(0, digits));
+        return (prefix.isEmpty() ? "" : prefix + "-") + (number / patientsPerPartition * patientsPerPartition);
+    }
+
+    // Partition name for a doctor's appointments
+    static String doctorPartition(String doctorId) {
+        return fileSafe(doctorId);
+    }
+
+    // A name that is safe as a file name on every platform; a name that had to
+    // be changed gets its hash appended so two IDs never share a file
+    static String fileSafe(String name) {
+        StringBuilder safe = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            safe.append(c < 128 && Character.isLetterOrDigit(c) || c == '-' ? c : '_');
+        }
+        if (!safe.toString().equals(name) || name.isEmpty()) {
+            safe.append('_').append(Integer.toHexString(name.hashCode()));
+        }
+        return safe.toString();
+    }
+}
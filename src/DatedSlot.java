@@ -0,0 +1,51 @@
+import java.time.LocalDate;
+import java.util.Objects;
+
+// One bookable slot on a calendar date, e.g. 2026-10-19 09:00AM. Created on
+// demand from a WeeklySchedule; never stored for slots nobody booked.
+public class DatedSlot {
+    private final LocalDate date;
+    private final int minute;    // Minute of the day
+    private final String label;  // Slot text as published, e.g. "09:00AM"
+
+    public DatedSlot(LocalDate date, int minute, String label) {
+        this.date = date;
+        this.minute = minute;
+        this.label = label;
+    }
+
+    public LocalDate getDate() { return date; }
+    public int getMinute() { return minute; }
+    public String getLabel() { return label; }
+
+    // Minutes since 1970-01-01 00:00; orders slots across days
+    public long key() {
+        return key(date, minute);
+    }
+
+    static long key(LocalDate date, int minute) {
+        return date.toEpochDay() * SlotCalendar.SLOTS_PER_DAY + minute;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DatedSlot)) {
+            return false;
+        }
+        DatedSlot other = (DatedSlot) o;
+        return minute == other.minute && date.equals(other.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, minute);
+    }
+
+    @Override
+    public String toString() {
+        return date + " " + label;
+    }
+}
@@ -1,20 +1,23 @@
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class Doctor {
     private String doctorId;
     private String registrationNumber;
     private String name;
     private String specialization;
-    private List<String> availableTimeSlots;
+    private SlotCalendar availableTimeSlots;
     private double consultationFee;
+    private volatile WeeklySchedule weeklySchedule; // Recurring week for dated bookings
+    private volatile Consumer<Doctor> slotListener; // Told after each book or free (DoctorDirectory)
 
     public Doctor(String doctorId, String registrationNumber, String name, String specialization, List<String> availableTimeSlots, double consultationFee) {
         this.doctorId = doctorId;
         this.registrationNumber = registrationNumber;
         this.name = name;
         this.specialization = specialization;
-        this.availableTimeSlots = new ArrayList<>(availableTimeSlots);
+        this.availableTimeSlots = new SlotCalendar(availableTimeSlots);
+        this.weeklySchedule = WeeklySchedule.everyDay(availableTimeSlots);
         this.consultationFee = consultationFee;
     }
 
@@ -22,18 +25,42 @@ public class Doctor {
     public String getRegistrationNumber() { return registrationNumber; }
     public String getName() { return name; }
     public String getSpecialization() { return specialization; }
-    public List<String> getAvailableTimeSlots() { return availableTimeSlots; }
+    // Free slots in time order (a copy; use the methods below to change availability)
+    public List<String> getAvailableTimeSlots() { return availableTimeSlots.freeSlots(); }
+    public SlotCalendar getSlotCalendar() { return availableTimeSlots; }
     public double getConsultationFee() { return consultationFee; }
+    // Defaults to the constructor's slots on every day of the week
+    public WeeklySchedule getWeeklySchedule() { return weeklySchedule; }
+    public void setWeeklySchedule(WeeklySchedule weeklySchedule) { this.weeklySchedule = weeklySchedule; }
 
     public boolean isAvailable(String timeSlot) {
-        return availableTimeSlots.contains(timeSlot);
+        return availableTimeSlots.isFree(timeSlot);
     }
-    public void bookTimeSlot(String timeSlot) {
-        availableTimeSlots.remove(timeSlot);
+    public boolean hasAvailableSlots() {
+        return availableTimeSlots.hasFreeSlots();
+    }
+    public boolean bookTimeSlot(String timeSlot) {
+        boolean booked = availableTimeSlots.book(timeSlot);
+        if (booked) {
+            slotsChanged();
+        }
+        return booked;
     }
     public void freeTimeSlot(String timeSlot) {
-        if (!availableTimeSlots.contains(timeSlot)) {
-            availableTimeSlots.add(timeSlot);
+        if (availableTimeSlots.free(timeSlot)) {
+            slotsChanged();
+        }
+    }
+
+    void setSlotListener(Consumer<Doctor> listener) {
+        this.slotListener = listener;
+    }
+
+    // Called after the calendar lock is released
+    private void slotsChanged() {
+        Consumer<Doctor> listener = slotListener;
+        if (listener != null) {
+            listener.accept(this);
         }
     }
 
@@ -0,0 +1,236 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Registered doctors indexed by specialization (case and spacing insensitive)
+// and searchable by name (NameIndex).
+// Each specialization also keeps a min-heap of its doctors ordered by their
+// next free slot, so "earliest free slot for Cardiology" is answered from the
+// heap head in O(log n) instead of scanning every doctor. A doctor's heap entry
+// is replaced whenever its calendar changes (Doctor notifies the directory
+// after each book or free); replaced entries are dropped lazily when they reach
+// the head, as in Waitlist. The same notifications keep the set of doctors
+// with at least one free slot, so listing available doctors never scans or
+// copies the full list.
+// Each specialization is its own lock. Calendars are only read while holding
+// it, and Doctor notifies after releasing its calendar, so the two never wait
+// on each other in opposite order.
+public class DoctorDirectory {
+    private static final int EXACT_NAME_CANDIDATES = 100; // Every word matches exactly, so these rank first
+    private final Map<String, Specialty> bySpecialization = new HashMap<>();
+    private final NameIndex<Doctor> names = new NameIndex<>(Doctor::getName, Comparator.comparing(Doctor::getDoctorId));
+    private final Map<Doctor, Long> registrationOrder = new ConcurrentHashMap<>();
+    private final AtomicLong nextRegistration = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, Doctor> available = new ConcurrentSkipListMap<>(); // By registration order
+    private final Collection<Doctor> availableView = Collections.unmodifiableCollection(available.values());
+
+    // A free slot offered to triage: the doctor and the slot label
+    public static class FreeSlot {
+        private final Doctor doctor;
+        private final String timeSlot;
+
+        FreeSlot(Doctor doctor, String timeSlot) {
+            this.doctor = doctor;
+            this.timeSlot = timeSlot;
+        }
+
+        public Doctor getDoctor() { return doctor; }
+        public String getTimeSlot() { return timeSlot; }
+
+        @Override
+        public String toString() {
+            return timeSlot + " with " + doctor;
+        }
+    }
+
+    public void add(Doctor doctor) {
+        Specialty specialty;
+        synchronized (bySpecialization) {
+            specialty = bySpecialization.computeIfAbsent(normalize(doctor.getSpecialization()), k -> new Specialty());
+        }
+        synchronized (specialty) {
+            if (!specialty.doctors.add(doctor)) {
+                return;
+            }
+            registrationOrder.put(doctor, nextRegistration.getAndIncrement());
+            refresh(specialty, doctor);
+        }
+        names.add(doctor);
+        doctor.setSlotListener(this::slotsChanged);
+    }
+
+    // Doctors whose name matches the query by word, word prefix or a small typo, best match first
+    public List<Doctor> searchByName(String query, int limit) {
+        return names.search(query, limit);
+    }
+
+    // A doctor whose name equals this one, ignoring case, or null
+    public Doctor findByName(String name) {
+        for (Doctor doctor : names.search(name, EXACT_NAME_CANDIDATES)) {
+            if (doctor.getName().equalsIgnoreCase(name)) {
+                return doctor;
+            }
+        }
+        return null;
+    }
+
+    // Doctors with at least one free slot, in registration order. A live read-only
+    // view: it follows bookings and cancellations and iterating it never fails.
+    public Collection<Doctor> available() {
+        return availableView;
+    }
+
+    // Doctors of a specialization in registration order
+    public List<Doctor> findBySpecialization(String specialization) {
+        Specialty specialty = specialty(specialization);
+        if (specialty == null) {
+            return Collections.emptyList();
+        }
+        synchronized (specialty) {
+            return new ArrayList<>(specialty.doctors);
+        }
+    }
+
+    // Earliest free slot of any doctor in the specialization (ties go to the lower
+    // doctor ID), or null if every one of them is fully booked
+    public FreeSlot findEarliestFreeSlot(String specialization) {
+        Specialty specialty = specialty(specialization);
+        if (specialty == null) {
+            return null;
+        }
+        synchronized (specialty) {
+            return specialty.earliest();
+        }
+    }
+
+    // Specializations as spelt by their first doctor, sorted
+    public List<String> specializations() {
+        List<String> labels = new ArrayList<>();
+        synchronized (bySpecialization) {
+            for (Specialty specialty : bySpecialization.values()) {
+                synchronized (specialty) {
+                    if (!specialty.doctors.isEmpty()) {
+                        labels.add(specialty.doctors.iterator().next().getSpecialization());
+                    }
+                }
+            }
+        }
+        Collections.sort(labels, String.CASE_INSENSITIVE_ORDER);
+        return labels;
+    }
+
+    public void clear() {
+        synchronized (bySpecialization) {
+            bySpecialization.clear();
+        }
+        names.clear();
+        available.clear();
+        registrationOrder.clear();
+    }
+
+    // Called by Doctor after its calendar changed
+    private void slotsChanged(Doctor doctor) {
+        Specialty specialty = specialty(doctor.getSpecialization());
+        if (specialty == null) {
+            return;
+        }
+        synchronized (specialty) {
+            if (specialty.doctors.contains(doctor)) {
+                refresh(specialty, doctor);
+            }
+        }
+    }
+
+    // Called with the specialty locked, so the last refresh for a doctor wins
+    private void refresh(Specialty specialty, Doctor doctor) {
+        Long order = registrationOrder.get(doctor);
+        if (specialty.refresh(doctor)) {
+            available.put(order, doctor);
+        } else {
+            available.remove(order);
+        }
+    }
+
+    private Specialty specialty(String specialization) {
+        synchronized (bySpecialization) {
+            return bySpecialization.get(normalize(specialization));
+        }
+    }
+
+    private static String normalize(String specialization) {
+        return AppointmentStore.normalizeName(specialization);
+    }
+
+    // One specialization's doctors and the heap of their next free slots
+    private static class Specialty {
+        // Clock slots come first; a doctor with only non-clock slots ("Evening") sorts after them
+        private static final int UNTIMED = SlotCalendar.SLOTS_PER_DAY;
+
+        final Set<Doctor> doctors = new LinkedHashSet<>();
+        private final PriorityQueue<Entry> heap = new PriorityQueue<>(
+            Comparator.comparingInt((Entry e) -> e.minute).thenComparing(e -> e.doctor.getDoctorId()));
+        private final Map<Doctor, Entry> current = new IdentityHashMap<>(); // Live entry per doctor
+
+        // Re-read a doctor's next free slot and replace its heap entry;
+        // returns whether the doctor has any free slot
+        boolean refresh(Doctor doctor) {
+            int minute = nextFreeMinute(doctor);
+            Entry previous = current.get(doctor);
+            if (previous != null && previous.minute == minute) {
+                return true;
+            }
+            if (previous != null) {
+                previous.stale = true;
+                current.remove(doctor);
+            }
+            if (minute >= 0) {
+                Entry entry = new Entry(doctor, minute);
+                current.put(doctor, entry);
+                heap.offer(entry);
+            }
+            if (heap.size() > 2 * current.size() + 16) {
+                heap.removeIf(e -> e.stale);
+            }
+            return minute >= 0;
+        }
+
+        FreeSlot earliest() {
+            while (!heap.isEmpty() && heap.peek().stale) {
+                heap.poll();
+            }
+            Entry head = heap.peek();
+            if (head == null) {
+                return null;
+            }
+            SlotCalendar calendar = head.doctor.getSlotCalendar();
+            String label = head.minute < UNTIMED ? calendar.labelAt(head.minute) : firstUntimed(calendar);
+            return new FreeSlot(head.doctor, label);
+        }
+
+        private static int nextFreeMinute(Doctor doctor) {
+            SlotCalendar calendar = doctor.getSlotCalendar();
+            int minute = calendar.nextFreeIndex(0);
+            if (minute >= 0) {
+                return minute;
+            }
+            return calendar.hasFreeSlots() ? UNTIMED : -1;
+        }
+
+        private static String firstUntimed(SlotCalendar calendar) {
+            List<String> free = calendar.freeSlots();
+            return free.isEmpty() ? null : free.get(0);
+        }
+    }
+
+    private static class Entry {
+        final Doctor doctor;
+        final int minute;
+        boolean stale;
+
+        Entry(Doctor doctor, int minute) {
+            this.doctor = doctor;
+            this.minute = minute;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+// Kinds of saved data, each stored in its own CSV file. AppointmentManager
+// tracks which of them changed so a save rewrites only those files.
+public enum EntityType {
+    DOCTORS,        // doctors.csv (also changes when a slot is booked or freed)
+    PATIENTS,       // patients.csv
+    APPOINTMENTS,   // appointments.csv
+    CANCELLATIONS,  // cancellations.csv
+    WAITLIST;       // waitlist.csv
+
+    int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Allocates DOC/PAT/APT/CAN style identifiers from per-prefix counters.
+// Counters are recovered once at startup (from data/id_counters.csv and the
+// loaded records) so no allocation needs to scan existing data. Safe to call
+// from multiple threads; an ID is never handed out twice.
+public class IdAllocator {
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final int width; // Minimum number of digits, e.g. 3 gives DOC001
+
+    public IdAllocator(int width) {
+        this.width = width;
+    }
+
+    // Minimum width comes from -Dhospital.id.width (default 3 to match existing data)
+    public static IdAllocator fromSystemProperty() {
+        return new IdAllocator(Math.max(1, Integer.getInteger("hospital.id.width", 3)));
+    }
+
+    // Reserve the next identifier for a prefix
+    public String next(String prefix) {
+        return format(prefix, counter(prefix).incrementAndGet());
+    }
+
+    // The identifier for a value, padded to the minimum width (CAN numbers are
+    // assigned by the cancellation history, not by next())
+    public String format(String prefix, long value) {
+        String digits = Long.toString(value);
+        StringBuilder id = new StringBuilder(prefix.length() + Math.max(width, digits.length()));
+        id.append(prefix);
+        for (int i = digits.length(); i < width; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
+    }
+
+    // Record an existing identifier so it is never allocated again
+    public void observe(String id) {
+        if (id == null) {
+            return;
+        }
+        int digitsStart = id.length();
+        while (digitsStart > 0 && Character.isDigit(id.charAt(digitsStart - 1))) {
+            digitsStart--;
+        }
+        if (digitsStart == 0 || digitsStart == id.length() || id.length() - digitsStart > 18) {
+            return; // No prefix, no numeric part, or too long to be one of ours
+        }
+        observe(id.substring(0, digitsStart), Long.parseLong(id.substring(digitsStart)));
+    }
+
+    // Make sure the counter for prefix is at least value
+    public void observe(String prefix, long value) {
+        counter(prefix).accumulateAndGet(value, Math::max);
+    }
+
+    // Last value handed out per prefix, for persistence
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        return values;
+    }
+
+    private AtomicLong counter(String prefix) {
+        return counters.computeIfAbsent(prefix, p -> new AtomicLong());
+    }
+}
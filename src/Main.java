@@ -1,9 +1,25 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class Main {
     private static Scanner scanner = new Scanner(System.in);
     
     public static void main(String[] args) {
+        // Non-interactive mode: java Main --batch commands.txt
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            AppointmentManager manager = new AppointmentManager();
+            BatchRunner.run(manager, new java.io.File(args[1]));
+            manager.shutdown();
+            return;
+        }
+        
+        // Offline maintenance: java Main --dedup-patients (application must be stopped)
+        if (args.length >= 1 && args[0].equals("--dedup-patients")) {
+            PatientDeduplicator.run();
+            return;
+        }
+        
         System.out.println("HOSPITAL APPOINTMENT MANAGEMENT SYSTEM");
         System.out.println("==========================================");
         System.out.println("Welcome to the Digital Healthcare Platform!");
@@ -30,6 +46,7 @@ public class Main {
                     break;
                 case 3:
                     manager.displayAvailableDoctors();
+                    findEarliestSlot(manager);
                     break;
                 case 4:
                     manager.printHeader("APPOINTMENT BOOKING");
@@ -40,10 +57,19 @@ public class Main {
                     handleCancellations(manager);
                     break;
                 case 6:
-                    manager.displayAppointments();
+                    System.out.print("Doctor ID or date YYYY-MM-DD (blank for all doctors): ");
+                    String doctorId = scanner.nextLine().trim();
+                    LocalDate day = parseDate(doctorId);
+                    if (doctorId.isEmpty()) {
+                        manager.displayAppointments();
+                    } else if (day != null) {
+                        manager.displayAppointmentsOn(day);
+                    } else {
+                        manager.displayDoctorSchedule(doctorId);
+                    }
                     break;
                 case 7:
-                    manager.displayCancellationHistory();
+                    viewCancellationHistory(manager);
                     break;
                 case 8:
                     manager.displaySystemStatus();
@@ -53,6 +79,8 @@ public class Main {
                     break;
                 case 10:
                     System.out.println("\nThank you for using the Hospital Appointment Management System!");
+                    manager.flush(); // Write changes still waiting for the background save
+                    manager.shutdown();
                     System.out.println("All data has been automatically saved to CSV files.");
                     scanner.close();
                     return;
@@ -159,6 +187,11 @@ public class Main {
             }
             
             Doctor doctor = new Doctor(doctorId, registrationNumber, name, specialization, slots, fee);
+            System.out.print("Weekly template, e.g. MON=09:00AM;10:00AM|WED=02:00PM (blank = these slots every day): ");
+            String template = scanner.nextLine().trim();
+            if (!template.isEmpty()) {
+                doctor.setWeeklySchedule(WeeklySchedule.parse(template));
+            }
             manager.registerDoctor(doctor);
             System.out.println("Registered: Dr. " + doctor.getName() + " (" + specialization + ")");
             System.out.println("Doctor ID: " + doctorId + " | Registration: " + registrationNumber);
@@ -179,10 +212,6 @@ public class Main {
         for (int i = 1; i <= numPatients; i++) {
             System.out.println("\n--- Patient " + i + " ---");
             
-            // Auto-generate unique patient ID
-            String patientId = manager.generatePatientId();
-            System.out.println("Auto-generated Patient ID: " + patientId);
-            
             System.out.print("Enter Patient Name: ");
             String name = scanner.nextLine();
             
@@ -202,9 +231,10 @@ public class Main {
             System.out.print("Enter Medical History: ");
             String medicalHistory = scanner.nextLine();
             
-            Patient patient = new Patient(patientId, name, mobile, email, city, age, medicalHistory);
+            // Reuse the record of a returning patient; otherwise auto-generate a unique patient ID
+            Patient patient = registerOrReuse(manager, name, mobile, email, city, age, medicalHistory);
             patients.add(patient);
-            System.out.println("Patient: " + patient.getName() + " (ID: " + patientId + ", Age: " + patient.getAge() + ", " + patient.getCity() + ")");
+            System.out.println("Patient: " + patient.getName() + " (ID: " + patient.getPatientId() + ", Age: " + patient.getAge() + ", " + patient.getCity() + ")");
         }
         
         System.out.println("Patient registration completed!");
@@ -212,10 +242,21 @@ public class Main {
         return patients;
     }
     
+    private static Patient registerOrReuse(AppointmentManager manager, String name, String mobile, String email,
+                                           String city, int age, String medicalHistory) {
+        Patient existing = manager.findMatchingPatient(name, mobile, email);
+        if (existing != null) {
+            System.out.println("Returning patient found. Patient ID: " + existing.getPatientId());
+            return existing;
+        }
+        Patient patient = manager.findOrRegisterPatient(name, mobile, email, city, age, medicalHistory);
+        System.out.println("Auto-generated Patient ID: " + patient.getPatientId());
+        return patient;
+    }
+    
     private static void bookAppointments(AppointmentManager manager) {
-        // Check if there are any doctors
-        List<Doctor> availableDoctors = manager.getAvailableDoctors();
-        if (availableDoctors.isEmpty()) {
+        // Check if there are any doctors (a live view; no copy is made here)
+        if (manager.getAvailableDoctors().isEmpty()) {
             System.out.println("No doctors available! Please register doctors first.");
             return;
         }
@@ -251,15 +292,13 @@ public class Main {
             System.out.print("Medical History: ");
             String medicalHistory = scanner.nextLine();
             
-            // Auto-generate unique patient ID
-            String patientId = manager.generatePatientId();
-            System.out.println("Auto-generated Patient ID: " + patientId);
-            
-            Patient patient = new Patient(patientId, name, mobile, email, city, age, medicalHistory);
+            // Reuse the record of a returning patient; otherwise auto-generate a unique patient ID
+            Patient patient = registerOrReuse(manager, name, mobile, email, city, age, medicalHistory);
             
             // Display available doctors
             System.out.println("\nAvailable doctors:");
-            availableDoctors = manager.getAvailableDoctors(); // Refresh the list
+            // Numbered as shown, so the selection below refers to this list
+            List<Doctor> availableDoctors = new ArrayList<>(manager.getAvailableDoctors());
             for (int j = 0; j < availableDoctors.size(); j++) {
                 Doctor doc = availableDoctors.get(j);
                 System.out.println((j + 1) + ". Dr. " + doc.getName() + " (" + doc.getSpecialization() + ")");
@@ -275,12 +314,71 @@ public class Main {
                 continue;
             }
             
+            Doctor selectedDoctor = availableDoctors.get(doctorIndex);
+            
+            System.out.print("Date (YYYY-MM-DD, blank for today's slots): ");
+            String dateText = scanner.nextLine().trim();
+            LocalDate date = parseDate(dateText);
+            if (!dateText.isEmpty() && date == null) {
+                System.out.println("Invalid date!");
+                continue;
+            }
+            if (date != null) {
+                // The doctor's weekly template on that day, minus what is booked
+                System.out.println("Free slots on " + date + ": "
+                                   + manager.findFreeDatedSlots(selectedDoctor, date, date, Integer.MAX_VALUE));
+            }
+            
             System.out.print("Enter time slot: ");
             String timeSlot = scanner.nextLine();
             
-            Doctor selectedDoctor = availableDoctors.get(doctorIndex);
-            
-            manager.bookAppointment(patient, selectedDoctor, timeSlot);
+            if (date != null) {
+                manager.bookDatedAppointment(patient, selectedDoctor, date, timeSlot);
+            } else {
+                manager.bookAppointment(patient, selectedDoctor, timeSlot);
+            }
+        }
+    }
+    
+    // Triage: the soonest any doctor of a specialization can see a patient
+    private static void findEarliestSlot(AppointmentManager manager) {
+        List<String> specializations = manager.getSpecializations();
+        if (specializations.isEmpty()) {
+            return;
+        }
+        System.out.println("Specializations: " + String.join(", ", specializations));
+        System.out.print("Find earliest free slot for specialization (blank to skip): ");
+        String specialization = scanner.nextLine().trim();
+        if (specialization.isEmpty()) {
+            return;
+        }
+        DoctorDirectory.FreeSlot slot = manager.findEarliestFreeSlot(specialization);
+        if (slot == null) {
+            System.out.println("No free slot for " + specialization + ".");
+        } else {
+            System.out.println("Earliest free slot: " + slot.getTimeSlot() + " with " + slot.getDoctor()
+                               + " | ID: " + slot.getDoctor().getDoctorId());
+        }
+    }
+    
+    // A YYYY-MM-DD date, or null if the text is not one
+    private static LocalDate parseDate(String text) {
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+    
+    // Newest cancellations first, one page at a time
+    private static void viewCancellationHistory(AppointmentManager manager) {
+        int page = 1;
+        while (manager.displayCancellationHistory(page, AppointmentManager.CANCELLATION_PAGE_SIZE)) {
+            System.out.print("Show older cancellations? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
+            }
+            page++;
         }
     }
     
@@ -291,10 +389,15 @@ public class Main {
         String response = scanner.nextLine();
         
         while (response.equalsIgnoreCase("y")) {
-            System.out.print("Enter patient name to cancel appointment: ");
-            String patientName = scanner.nextLine();
-            
-            manager.cancelAppointment(patientName);
+            System.out.print("Enter patient name or appointment ID to cancel: ");
+            String input = scanner.nextLine().trim();
+            
+            // An exact appointment ID cancels that appointment; otherwise match by name
+            if (manager.findAppointmentById(input) != null) {
+                manager.cancelAppointmentById(input);
+            } else {
+                manager.cancelAppointment(input);
+            }
             
             System.out.print("Cancel another appointment? (y/n): ");
             response = scanner.nextLine();
@@ -0,0 +1,383 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+// Search index over people's names: prefix and typo-tolerant lookup with ranked
+// results. Names are split into lower-case words, and
+//  - each word maps to the records that contain it, for exact word lookup;
+//  - the distinct words are kept sorted, so a prefix is a range scan;
+//  - each distinct word of three or more letters is also filed under every
+//    variant with one letter deleted ("john" under "ohn", "jhn", "jon", "joh").
+//    A word one typo away from the query (a wrong, missing, extra or swapped
+//    letter) shares a variant with it, so typos are found with a handful of
+//    lookups instead of comparing against the whole vocabulary.
+// Words containing digits (as in generated test names) are matched exactly or
+// by prefix only, which keeps the variant index the size of the real names.
+// Records must match every query word; they are ranked by the sum of the match
+// costs (same word, then prefix, then typo), so "jon smi" finds "Jon Smith"
+// before "John Smith", then by fewer words in the name. Records holding every
+// query word exactly are all found, by intersecting the words' record sets;
+// only prefix and typo matches are capped. Updates are incremental. Like AppointmentStore, maps are
+// concurrent and each per-key set is guarded by its own monitor.
+public class NameIndex<T> {
+    private static final int MAX_CANDIDATES = 500; // Prefix and typo matches scored per search, for bounded latency
+    private static final int COST_EXACT = 0;
+    private static final int COST_PREFIX = 1;
+    private static final int COST_TYPO = 2;
+
+    private final Function<T, String> nameOf;
+    private final Comparator<T> tieBreak;
+    private final ConcurrentMap<String, Set<T>> byWord = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> words = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, Set<String>> wordsByVariant = new ConcurrentHashMap<>();
+
+    public NameIndex(Function<T, String> nameOf, Comparator<T> tieBreak) {
+        this.nameOf = nameOf;
+        this.tieBreak = tieBreak;
+    }
+
+    public void add(T record) {
+        for (String word : wordsOf(nameOf.apply(record))) {
+            // A word and its variants are filed and dropped inside compute, so a
+            // word is in the vocabulary exactly while some record uses it
+            byWord.compute(word, (w, records) -> {
+                Set<T> updated = records;
+                if (updated == null) {
+                    updated = new LinkedHashSet<>();
+                    words.add(w);
+                    for (String variant : variantsOf(w)) {
+                        addTo(wordsByVariant, variant, w);
+                    }
+                }
+                synchronized (updated) {
+                    updated.add(record);
+                }
+                return updated;
+            });
+        }
+    }
+
+    public void remove(T record) {
+        for (String word : wordsOf(nameOf.apply(record))) {
+            byWord.computeIfPresent(word, (w, records) -> {
+                synchronized (records) {
+                    records.remove(record);
+                    if (!records.isEmpty()) {
+                        return records;
+                    }
+                }
+                words.remove(w);
+                for (String variant : variantsOf(w)) {
+                    removeFrom(wordsByVariant, variant, w);
+                }
+                return null;
+            });
+        }
+    }
+
+    public void clear() {
+        byWord.clear();
+        words.clear();
+        wordsByVariant.clear();
+    }
+
+    // Up to limit records matching every word of the query, best match first
+    public List<T> search(String query, int limit) {
+        List<String> queryWords = wordsOf(query);
+        if (queryWords.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // Every record holding all the query words exactly, however many there are
+        Set<T> candidates = new LinkedHashSet<>(exactMatches(queryWords));
+
+        // Indexed words matching each query word; up to MAX_CANDIDATES more
+        // candidates come from the query word with the fewest records behind it
+        List<Map<String, Integer>> matchesPerWord = new ArrayList<>(queryWords.size());
+        Map<String, Integer> rarest = null;
+        int rarestCount = Integer.MAX_VALUE;
+        for (String queryWord : queryWords) {
+            Map<String, Integer> matches = matchingWords(queryWord);
+            matchesPerWord.add(matches);
+            int count = recordCount(matches.keySet());
+            if (count < rarestCount) {
+                rarest = matches;
+                rarestCount = count;
+            }
+        }
+        int added = 0;
+        for (String word : byCost(rarest)) {
+            Set<T> records = byWord.get(word);
+            if (records == null) {
+                continue;
+            }
+            synchronized (records) {
+                for (T record : records) {
+                    if (added == MAX_CANDIDATES) {
+                        break;
+                    }
+                    if (candidates.add(record)) {
+                        added++;
+                    }
+                }
+            }
+        }
+
+        // Score each candidate against every query word; of equal scores, names
+        // with fewer words besides the query's come first ("John Smith" before
+        // "John Smith Perera")
+        List<Ranked<T>> ranked = new ArrayList<>();
+        for (T record : candidates) {
+            List<String> nameWords = wordsOf(nameOf.apply(record));
+            int score = score(queryWords, matchesPerWord, nameWords);
+            if (score >= 0) {
+                ranked.add(new Ranked<>(record, score, nameWords.size()));
+            }
+        }
+        ranked.sort(Comparator.<Ranked<T>>comparingInt(r -> r.score).thenComparingInt(r -> r.words)
+                              .thenComparing(r -> r.record, tieBreak));
+        List<T> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            results.add(ranked.get(i).record);
+        }
+        return results;
+    }
+
+    // Records holding every query word as a whole word: the smallest of the
+    // words' record sets, kept where each other set also has the record
+    private List<T> exactMatches(List<String> queryWords) {
+        List<Set<T>> sets = new ArrayList<>(queryWords.size());
+        for (String queryWord : queryWords) {
+            Set<T> records = byWord.get(queryWord);
+            if (records == null) {
+                return Collections.emptyList();
+            }
+            sets.add(records);
+        }
+        sets.sort(Comparator.comparingInt(NameIndex::sizeOf));
+        List<T> matches;
+        synchronized (sets.get(0)) {
+            matches = new ArrayList<>(sets.get(0));
+        }
+        for (int i = 1; i < sets.size() && !matches.isEmpty(); i++) {
+            Set<T> records = sets.get(i);
+            synchronized (records) {
+                matches.removeIf(record -> !records.contains(record));
+            }
+        }
+        return matches;
+    }
+
+    // Indexed words matching one query word, with their match cost. The word
+    // itself always matches; prefix matches stop once they cover MAX_CANDIDATES
+    // records, and typos rank below them, so typos are only looked up when
+    // prefixes leave room.
+    private Map<String, Integer> matchingWords(String queryWord) {
+        Map<String, Integer> matches = new LinkedHashMap<>();
+        if (byWord.containsKey(queryWord)) {
+            matches.put(queryWord, COST_EXACT);
+        }
+        int expanded = 0; // Records behind prefix matches
+        for (String word : words.subSet(queryWord, false, queryWord + Character.MAX_VALUE, false)) {
+            if (expanded >= MAX_CANDIDATES) {
+                return matches;
+            }
+            matches.put(word, COST_PREFIX);
+            expanded += recordCount(Collections.singleton(word));
+        }
+        if (expanded >= MAX_CANDIDATES || !isTypoCandidate(queryWord)) {
+            return matches;
+        }
+        // One typo: the query or the word (or both) lose one letter and meet
+        Set<String> similar = new LinkedHashSet<>();
+        collect(wordsByVariant.get(queryWord), similar);
+        for (String variant : variantsOf(queryWord)) {
+            if (byWord.containsKey(variant)) {
+                similar.add(variant);
+            }
+            collect(wordsByVariant.get(variant), similar);
+        }
+        for (String word : similar) {
+            if (!matches.containsKey(word) && editDistance(queryWord, word, 1) <= 1) {
+                matches.put(word, COST_TYPO);
+            }
+        }
+        return matches;
+    }
+
+    // Sum of the best cost per query word, or -1 if some query word is not matched
+    private static int score(List<String> queryWords, List<Map<String, Integer>> matchesPerWord, List<String> nameWords) {
+        int total = 0;
+        for (int q = 0; q < queryWords.size(); q++) {
+            String queryWord = queryWords.get(q);
+            Map<String, Integer> matches = matchesPerWord.get(q);
+            int best = -1;
+            for (String nameWord : nameWords) {
+                Integer cost = matches.get(nameWord);
+                if (cost == null && nameWord.startsWith(queryWord)) {
+                    cost = COST_PREFIX; // Prefix matches past the lookup limit
+                }
+                if (cost != null && (best < 0 || cost < best)) {
+                    best = cost;
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    // Records behind these words, counted up to MAX_CANDIDATES
+    private int recordCount(Collection<String> matchedWords) {
+        int count = 0;
+        for (String word : matchedWords) {
+            Set<T> records = byWord.get(word);
+            if (records != null) {
+                synchronized (records) {
+                    count += records.size();
+                }
+            }
+            if (count >= MAX_CANDIDATES) {
+                return MAX_CANDIDATES;
+            }
+        }
+        return count;
+    }
+
+    private static int sizeOf(Set<?> records) {
+        synchronized (records) {
+            return records.size();
+        }
+    }
+
+    private static List<String> byCost(Map<String, Integer> matches) {
+        List<String> sorted = new ArrayList<>(matches.keySet());
+        sorted.sort(Comparator.comparing(matches::get)); // Stable: prefix matches stay in word order
+        return sorted;
+    }
+
+    private static void collect(Set<String> posting, Set<String> into) {
+        if (posting != null) {
+            synchronized (posting) {
+                into.addAll(posting);
+            }
+        }
+    }
+
+    // Levenshtein distance with adjacent swaps, giving up past maxDistance
+    static int editDistance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + substitution);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    // Lower-case words of a name, without repeats (the words of AppointmentStore.normalizeName)
+    static List<String> wordsOf(String name) {
+        List<String> words = new ArrayList<>(3);
+        if (name == null) {
+            return words;
+        }
+        int length = name.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean space = i == length || Character.isWhitespace(name.charAt(i));
+            if (!space && start < 0) {
+                start = i;
+            } else if (space && start >= 0) {
+                String word = name.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isTypoCandidate(String word) {
+        if (word.length() < 3) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The word with each one letter deleted
+    private static Set<String> variantsOf(String word) {
+        if (!isTypoCandidate(word)) {
+            return Collections.emptySet();
+        }
+        Set<String> variants = new LinkedHashSet<>();
+        for (int i = 0; i < word.length(); i++) {
+            variants.add(word.substring(0, i) + word.substring(i + 1));
+        }
+        return variants;
+    }
+
+    private static void addTo(ConcurrentMap<String, Set<String>> index, String key, String word) {
+        index.compute(key, (k, posting) -> {
+            Set<String> updated = posting == null ? new HashSet<>() : posting;
+            synchronized (updated) {
+                updated.add(word);
+            }
+            return updated;
+        });
+    }
+
+    // A search result with its match cost and the number of words in its name
+    private static final class Ranked<T> {
+        final T record;
+        final int score;
+        final int words;
+
+        Ranked(T record, int score, int words) {
+            this.record = record;
+            this.score = score;
+            this.words = words;
+        }
+    }
+
+    private static void removeFrom(ConcurrentMap<String, Set<String>> index, String key, String word) {
+        index.computeIfPresent(key, (k, posting) -> {
+            synchronized (posting) {
+                posting.remove(word);
+                return posting.isEmpty() ? null : posting;
+            }
+        });
+    }
+}
@@ -0,0 +1,255 @@
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Loads a CSV file by memory-mapping it, splitting it into chunks at record
+// boundaries and parsing the chunks in parallel on a fork/join pool.
+// Rows come back in file order, the same as reading the file line by line,
+// except that a quoted field may now contain line breaks.
+public class ParallelCsvLoader {
+    private static final long MIN_CHUNK_BYTES = 1 << 20; // Smaller files are parsed on the calling thread
+    private static final long MAX_CHUNK_BYTES = 1 << 30; // A single mapping must stay below 2GB
+
+    // Builds one object from a record's fields, or returns null to skip the record.
+    // The tokenizer is reused for the next record, so keep Strings, not the tokenizer.
+    @FunctionalInterface
+    public interface RowParser<T> {
+        T parse(CsvTokenizer fields);
+    }
+
+    private final int threads;
+    private final ForkJoinPool pool; // null when parsing on the calling thread
+    private final Charset charset = Charset.defaultCharset(); // Same as FileReader
+
+    public ParallelCsvLoader(int threads) {
+        this.threads = Math.max(1, threads);
+        this.pool = this.threads > 1 ? new ForkJoinPool(this.threads) : null;
+    }
+
+    // Thread count comes from -Dhospital.load.threads (default: one per core)
+    public static ParallelCsvLoader fromSystemProperty() {
+        return new ParallelCsvLoader(Integer.getInteger("hospital.load.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Parse every record after the header and append the results to rows in file order.
+    // If a record fails with NumberFormatException, the rows before it are kept and the
+    // exception is rethrown, as the line-by-line loaders did.
+    public <T> void load(File file, RowParser<T> parser, List<T> rows) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            long[] bounds = recordBoundaries(channel, size);
+
+            List<Callable<Chunk<T>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                boolean skipHeader = i == 0;
+                tasks.add(() -> parseChunk(channel, start, end, skipHeader, parser));
+            }
+
+            for (Chunk<T> chunk : run(tasks)) {
+                rows.addAll(chunk.rows);
+                if (chunk.failure != null) {
+                    throw chunk.failure;
+                }
+            }
+        }
+    }
+
+    // Load several files (the partitions of one entity) concurrently, one task per
+    // file, and append their rows in the order the files are given. A failure
+    // keeps the rows before it, as load does.
+    public <T> void loadAll(List<File> files, RowParser<T> parser, List<T> rows) throws IOException {
+        List<Callable<Chunk<T>>> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(() -> {
+                Chunk<T> chunk = new Chunk<>();
+                try {
+                    load(file, parser, chunk.rows);
+                } catch (NumberFormatException e) {
+                    chunk.failure = e;
+                }
+                return chunk;
+            });
+        }
+        for (Chunk<T> chunk : run(tasks)) {
+            rows.addAll(chunk.rows);
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+        }
+    }
+
+    // Split points that fall just after a record-ending newline. The quote state at a
+    // nominal split point depends on everything before it, so each range is scanned
+    // once for both possible starting states and the real state is resolved afterwards.
+    private long[] recordBoundaries(FileChannel channel, long size) throws IOException {
+        long chunkCount = Math.max(size / MIN_CHUNK_BYTES, 1);
+        chunkCount = Math.min(chunkCount, threads * 4L);
+        chunkCount = Math.max(chunkCount, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        if (pool == null && size <= MAX_CHUNK_BYTES) {
+            chunkCount = 1;
+        }
+        if (chunkCount == 1) {
+            return new long[] { 0, size };
+        }
+
+        int n = (int) chunkCount;
+        List<Callable<long[]>> scans = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            long start = size * i / n;
+            long end = size * (i + 1) / n;
+            scans.add(() -> scanRange(channel, start, end));
+        }
+        List<long[]> results = run(scans);
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        boolean inQuotes = false;
+        for (int i = 0; i < n; i++) {
+            long[] scan = results.get(i);
+            if (i > 0) {
+                long newline = inQuotes ? scan[2] : scan[1];
+                if (newline >= 0) {
+                    bounds.add(newline + 1);
+                }
+            }
+            inQuotes ^= scan[0] != 0;
+        }
+        if (bounds.get(bounds.size() - 1) != size) {
+            bounds.add(size);
+        }
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // { quote parity, first newline outside quotes if the range starts outside quotes,
+    //   first newline outside quotes if it starts inside quotes } (-1 = none)
+    private static long[] scanRange(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int length = buffer.limit();
+        int quotes = 0;
+        long startingOutside = -1;
+        long startingInside = -1;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                quotes++;
+            } else if (b == '\n') {
+                if ((quotes & 1) == 0) {
+                    if (startingOutside < 0) {
+                        startingOutside = start + i;
+                    }
+                } else if (startingInside < 0) {
+                    startingInside = start + i;
+                }
+            }
+        }
+        return new long[] { quotes & 1, startingOutside, startingInside };
+    }
+
+    private <T> Chunk<T> parseChunk(FileChannel channel, long start, long end, boolean skipHeader, RowParser<T> parser) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("CSV record larger than 2GB at byte " + start);
+        }
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharBuffer text = charset.decode(bytes);
+        char[] chars = text.array();
+        int offset = text.arrayOffset();
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        Chunk<T> chunk = new Chunk<>();
+
+        int length = text.limit();
+        int recordStart = 0;
+        boolean inQuotes = false;
+        boolean header = skipHeader;
+        for (int i = 0; i <= length; i++) {
+            if (i < length) {
+                char c = chars[offset + i];
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                }
+                if (c != '\n' || inQuotes) {
+                    continue;
+                }
+            } else if (recordStart == length) {
+                break; // No trailing record after the last newline
+            }
+
+            int recordEnd = i;
+            if (recordEnd > recordStart && chars[offset + recordEnd - 1] == '\r') {
+                recordEnd--;
+            }
+            int from = offset + recordStart;
+            recordStart = i + 1;
+            if (header) {
+                header = false;
+                continue;
+            }
+            try {
+                T row = parser.parse(tokenizer.reset(chars, from, offset + recordEnd));
+                if (row != null) {
+                    chunk.rows.add(row);
+                }
+            } catch (NumberFormatException e) {
+                chunk.failure = e;
+                break;
+            }
+        }
+        return chunk;
+    }
+
+    // Run tasks on the pool (or inline) and return their results in task order
+    private <R> List<R> run(List<Callable<R>> tasks) throws IOException {
+        List<R> results = new ArrayList<>(tasks.size());
+        try {
+            if (pool == null || tasks.size() == 1) {
+                for (Callable<R> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+            for (Future<R> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("CSV load interrupted");
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Rows parsed from one chunk, and the error that stopped it, if any
+    private static class Chunk<T> {
+        final List<T> rows = new ArrayList<>();
+        NumberFormatException failure;
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.Objects;
+
 public class Patient {
     private String patientId;
     private String name;
@@ -25,6 +27,23 @@ public class Patient {
     public String getCity() { return city; }
     public String getMedicalHistory() { return medicalHistory; }
 
+    // Patients are identified by ID alone, so the same patient loaded twice is one patient
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Patient)) {
+            return false;
+        }
+        return Objects.equals(patientId, ((Patient) o).patientId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(patientId);
+    }
+
     @Override
     public String toString() {
         return name + " (" + age + ", " + city + ")";
@@ -0,0 +1,151 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Offline pass that merges duplicate patients already saved in patients.csv.
+// Two records are the same patient when PatientRegistry.findMatch says so (same
+// name and the same mobile number or email); the earliest record in the file is
+// kept. appointments.csv, cancellations.csv, the archived cancellations and
+// waitlist.csv are rewritten row by row, so every other field is left exactly
+// as it was.
+// Run it while the application is stopped: java -cp src Main --dedup-patients
+public class PatientDeduplicator {
+    private static final int APPOINTMENT_PATIENT_ID = 1;  // AppointmentID,PatientID,PatientName,...
+    private static final int CANCELLATION_PATIENT_ID = 2; // CancellationID,AppointmentID,PatientID,PatientName,...
+    private static final int WAITLIST_PATIENT_ID = 1;     // EntryID,PatientID,PatientName,...
+
+    private int patientsRead;
+    private int patientsMerged;
+    private int appointmentsUpdated;
+    private int cancellationsUpdated;
+    private int waitlistUpdated;
+
+    public static void run() {
+        PatientDeduplicator deduplicator = new PatientDeduplicator();
+        try {
+            if (deduplicator.deduplicate()) {
+                deduplicator.printReport();
+            }
+        } catch (IOException e) {
+            System.err.println(" Error deduplicating patients: " + e.getMessage());
+        }
+    }
+
+    // Returns false if the data directory is not in a state this pass may rewrite
+    public boolean deduplicate() throws IOException {
+        if (DataPartitions.isEnabled() || CSVManager.hasPartitions()) {
+            System.err.println(" Error: merging duplicate patients needs the flat data layout.");
+            System.err.println(" Start the application without -Dhospital.data.layout=partitioned, save all data from the");
+            System.err.println(" CSV Data Management menu and exit, then run this again.");
+            return false;
+        }
+        // The journal always starts with a header line; a checkpoint also holds changes the CSV files lack
+        File journal = CSVManager.getJournalFile();
+        if (!ChangeJournal.readRecords(journal).isEmpty() || ChangeJournal.readHeader(journal).afterCheckpoint) {
+            System.err.println(" Error: data/journal.log holds changes not yet in the CSV files.");
+            System.err.println(" Start the application and exit it normally, then run this again.");
+            return false;
+        }
+
+        List<Patient> loaded = CSVManager.loadPatients();
+        patientsRead = loaded.size();
+        PatientRegistry kept = new PatientRegistry();
+        List<Patient> keptInFileOrder = new ArrayList<>();
+        Map<String, Patient> replacements = new HashMap<>(); // Duplicate patient ID -> kept record
+        for (Patient patient : loaded) {
+            Patient match = kept.findById(patient.getPatientId());
+            if (match == null) {
+                match = kept.findMatch(patient.getName(), patient.getMobile(), patient.getEmail());
+            }
+            if (match == null) {
+                kept.register(patient);
+                keptInFileOrder.add(patient);
+            } else if (!match.getPatientId().equals(patient.getPatientId())) {
+                replacements.put(patient.getPatientId(), match);
+            }
+        }
+        patientsMerged = patientsRead - keptInFileOrder.size();
+        if (patientsMerged == 0) {
+            return true;
+        }
+
+        // References first: if this is interrupted, every row still points at a saved patient
+        appointmentsUpdated = rewriteReferences(CSVManager.getAppointmentsFile(), APPOINTMENT_PATIENT_ID, replacements);
+        cancellationsUpdated = rewriteReferences(CSVManager.getCancellationsFile(), CANCELLATION_PATIENT_ID, replacements);
+        cancellationsUpdated += CancellationArchive.fromSystemProperty(CSVManager.getCancellationArchiveDir())
+            .rewriteRows(row -> replaceReference(row, CANCELLATION_PATIENT_ID, replacements));
+        // The waitlist loader drops entries whose patient no longer exists
+        waitlistUpdated = rewriteReferences(CSVManager.getWaitlistFile(), WAITLIST_PATIENT_ID, replacements);
+        CSVManager.savePatients(keptInFileOrder);
+        // The snapshot still holds the duplicates
+        Files.deleteIfExists(CSVManager.getSnapshotFile().toPath());
+        return true;
+    }
+
+    // Point rows at the kept patient (ID and name); returns the number of rows changed
+    private static int rewriteReferences(File file, int idField, Map<String, Patient> replacements) throws IOException {
+        if (!file.exists() || replacements.isEmpty()) {
+            return 0;
+        }
+        String header;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            header = reader.readLine();
+        }
+        List<String[]> rows = new ArrayList<>();
+        CSVManager.loader.load(file, CsvTokenizer::toArray, rows);
+
+        int changed = 0;
+        for (String[] row : rows) {
+            if (replaceReference(row, idField, replacements)) {
+                changed++;
+            }
+        }
+        if (changed == 0) {
+            return 0;
+        }
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp.toFile())))) {
+            writer.println(header);
+            for (String[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        writer.print(',');
+                    }
+                    writer.print(CSVManager.escapeCSV(row[i]));
+                }
+                writer.println();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        return changed;
+    }
+
+    // Point one row at the kept patient; the patient name follows the ID
+    private static boolean replaceReference(String[] row, int idField, Map<String, Patient> replacements) {
+        Patient replacement = row.length > idField + 1 ? replacements.get(row[idField]) : null;
+        if (replacement == null) {
+            return false;
+        }
+        row[idField] = replacement.getPatientId();
+        row[idField + 1] = replacement.getName();
+        return true;
+    }
+
+    public void printReport() {
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println(" PATIENT DEDUPLICATION");
+        System.out.println("=".repeat(60));
+        System.out.println(" Patients read: " + patientsRead);
+        System.out.println(" Duplicates merged: " + patientsMerged);
+        System.out.println(" Appointments updated: " + appointmentsUpdated);
+        System.out.println(" Cancellations updated: " + cancellationsUpdated);
+        System.out.println(" Waitlist entries updated: " + waitlistUpdated);
+        System.out.println("=".repeat(60));
+    }
+
+    public int getPatientsMerged() {
+        return patientsMerged;
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Every known patient, indexed by patient ID (primary key) and by normalized
+// mobile number, email and name (secondary keys, which several patients may
+// share). All lookups are O(1). Names are also searchable by prefix and with
+// typos through a NameIndex. Follows AppointmentStore: the ID map is a
+// ConcurrentHashMap and each secondary key holds a small insertion-ordered set
+// guarded by its own monitor. Iteration is weakly consistent and unordered.
+public class PatientRegistry extends AbstractCollection<Patient> {
+    private final ConcurrentMap<String, Patient> byId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Patient>> byMobile = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Patient>> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Patient>> byName = new ConcurrentHashMap<>();
+    private final NameIndex<Patient> nameSearch = new NameIndex<>(Patient::getName, Comparator.comparing(Patient::getPatientId));
+
+    // Add a patient, or replace a different record stored under the same ID.
+    // Returns false if this exact record was already registered.
+    public boolean register(Patient patient) {
+        Patient previous = byId.put(patient.getPatientId(), patient);
+        if (previous == patient) {
+            return false;
+        }
+        if (previous != null) {
+            unindex(previous);
+        }
+        addToIndex(byMobile, normalizeMobile(patient.getMobile()), patient);
+        addToIndex(byEmail, normalizeEmail(patient.getEmail()), patient);
+        addToIndex(byName, AppointmentStore.normalizeName(patient.getName()), patient);
+        nameSearch.add(patient);
+        return true;
+    }
+
+    @Override
+    public boolean add(Patient patient) {
+        return register(patient);
+    }
+
+    public Patient findById(String patientId) {
+        return patientId == null ? null : byId.get(patientId);
+    }
+
+    // Patients with this mobile number (digits compared only) in registration order
+    public List<Patient> findByMobile(String mobile) {
+        return copyOf(byMobile.get(normalizeMobile(mobile)));
+    }
+
+    // Patients with this email (case insensitive) in registration order
+    public List<Patient> findByEmail(String email) {
+        return copyOf(byEmail.get(normalizeEmail(email)));
+    }
+
+    // Patients with this name (case and spacing insensitive) in registration order
+    public List<Patient> findByName(String name) {
+        return copyOf(byName.get(AppointmentStore.normalizeName(name)));
+    }
+
+    // Patients whose name matches the query by word, word prefix or a small typo, best match first
+    public List<Patient> search(String query, int limit) {
+        return nameSearch.search(query, limit);
+    }
+
+    // The earliest registered patient who is the same person: same name and the
+    // same mobile number or email. Family members often share a phone or an
+    // email, so a shared contact alone is not a match. Only the (small) sets of
+    // patients sharing that contact are checked.
+    public Patient findMatch(String name, String mobile, String email) {
+        String nameKey = AppointmentStore.normalizeName(name);
+        Patient match = firstWithName(byMobile.get(normalizeMobile(mobile)), nameKey);
+        if (match == null) {
+            match = firstWithName(byEmail.get(normalizeEmail(email)), nameKey);
+        }
+        return match;
+    }
+
+    public boolean containsId(String patientId) {
+        return patientId != null && byId.containsKey(patientId);
+    }
+
+    public Patient removeById(String patientId) {
+        Patient removed = byId.remove(patientId);
+        if (removed != null) {
+            unindex(removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Patient && byId.get(((Patient) o).getPatientId()) == o;
+    }
+
+    @Override
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public void clear() {
+        byId.clear();
+        byMobile.clear();
+        byEmail.clear();
+        byName.clear();
+        nameSearch.clear();
+    }
+
+    @Override
+    public Iterator<Patient> iterator() {
+        Iterator<Patient> values = byId.values().iterator();
+        return new Iterator<Patient>() {
+            private Patient last;
+
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public Patient next() {
+                last = values.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                values.remove();
+                unindex(last);
+            }
+        };
+    }
+
+    private void unindex(Patient patient) {
+        removeFromIndex(byMobile, normalizeMobile(patient.getMobile()), patient);
+        removeFromIndex(byEmail, normalizeEmail(patient.getEmail()), patient);
+        removeFromIndex(byName, AppointmentStore.normalizeName(patient.getName()), patient);
+        nameSearch.remove(patient);
+    }
+
+    private static Patient firstWithName(Set<Patient> matches, String nameKey) {
+        if (matches == null) {
+            return null;
+        }
+        synchronized (matches) {
+            for (Patient patient : matches) {
+                if (AppointmentStore.normalizeName(patient.getName()).equals(nameKey)) {
+                    return patient;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Patient> copyOf(Set<Patient> matches) {
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        synchronized (matches) {
+            return new ArrayList<>(matches);
+        }
+    }
+
+    // Sets are created and dropped inside compute so a writer never adds to a detached set.
+    // Blank keys are not indexed: they would group unrelated patients together.
+    private static void addToIndex(ConcurrentMap<String, Set<Patient>> index, String key, Patient patient) {
+        if (key.isEmpty()) {
+            return;
+        }
+        index.compute(key, (k, matches) -> {
+            Set<Patient> updated = matches == null ? new LinkedHashSet<>() : matches;
+            synchronized (updated) {
+                updated.add(patient);
+            }
+            return updated;
+        });
+    }
+
+    private static void removeFromIndex(ConcurrentMap<String, Set<Patient>> index, String key, Patient patient) {
+        if (key.isEmpty()) {
+            return;
+        }
+        index.computeIfPresent(key, (k, matches) -> {
+            synchronized (matches) {
+                matches.remove(patient);
+                return matches.isEmpty() ? null : matches;
+            }
+        });
+    }
+
+    // Digits only, so "071-111 1111" and "0711111111" match
+    static String normalizeMobile(String mobile) {
+        if (mobile == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(mobile.length());
+        for (int i = 0; i < mobile.length(); i++) {
+            char c = mobile.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    // Trimmed and lower-case
+    static String normalizeEmail(String email) {
+        if (email == null) {
+            return "";
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,17 @@
+// How AppointmentManager persists changes after each mutation
+public enum PersistenceMode {
+    CSV,      // Rewrite the CSV files after every operation (default)
+    JOURNAL,  // Append one record per operation to data/journal.log and replay it at startup
+    MEMORY;   // Keep everything in memory: nothing is loaded or saved automatically (stress tests)
+
+    // Read the mode from -Dhospital.persistence=csv|journal|memory
+    public static PersistenceMode fromSystemProperty() {
+        String value = System.getProperty("hospital.persistence", "csv");
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println(" Unknown persistence mode '" + value + "', using CSV.");
+            return CSV;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.*;
+
+// Immutable view of every active appointment, grouped by doctor and sorted by
+// time (AppointmentStore.BY_TIME), so displays, reports and saves read one
+// state without locking. AppointmentStore keeps one immutable array per doctor
+// and assembles this view only when it is asked for, sharing those arrays:
+// each doctor's day is exactly as it was at one moment, and a doctor's
+// appointments never appear half-changed.
+// The static helpers below build a doctor's next array; a change copies only
+// that doctor's appointments.
+public final class ScheduleSnapshot extends AbstractCollection<Appointment> {
+    private static final Appointment[] NONE = new Appointment[0];
+
+    private final String[] doctorIds;       // Sorted
+    private final Appointment[][] byDoctor; // Parallel to doctorIds, each sorted by BY_TIME, never empty
+    private final int size;
+
+    private ScheduleSnapshot(String[] doctorIds, Appointment[][] byDoctor, int size) {
+        this.doctorIds = doctorIds;
+        this.byDoctor = byDoctor;
+        this.size = size;
+    }
+
+    // Assemble from the current per-doctor arrays (shared, not copied) in
+    // O(doctors log doctors)
+    static ScheduleSnapshot of(Map<String, Appointment[]> days) {
+        TreeMap<String, Appointment[]> sorted = new TreeMap<>();
+        for (Map.Entry<String, Appointment[]> day : days.entrySet()) {
+            sorted.put(day.getKey(), day.getValue());
+        }
+        String[] doctorIds = new String[sorted.size()];
+        Appointment[][] byDoctor = new Appointment[sorted.size()][];
+        int i = 0;
+        int size = 0;
+        for (Map.Entry<String, Appointment[]> day : sorted.entrySet()) {
+            doctorIds[i] = day.getKey();
+            byDoctor[i++] = day.getValue();
+            size += day.getValue().length;
+        }
+        return new ScheduleSnapshot(doctorIds, byDoctor, size);
+    }
+
+    // A doctor's day (null = none yet) plus one appointment, replacing one with
+    // the same ID and time; the same array if it is already there
+    static Appointment[] with(Appointment[] day, Appointment appointment) {
+        if (day == null) {
+            return new Appointment[] { appointment };
+        }
+        int a = Arrays.binarySearch(day, appointment, AppointmentStore.BY_TIME);
+        if (a >= 0) {
+            if (day[a] == appointment) {
+                return day;
+            }
+            Appointment[] updated = day.clone();
+            updated[a] = appointment;
+            return updated;
+        }
+        return insert(day, -a - 1, appointment);
+    }
+
+    // A doctor's day minus one appointment (the same object); empty when it was
+    // the last one, the same array if it is not there
+    static Appointment[] without(Appointment[] day, Appointment appointment) {
+        if (day == null) {
+            return null;
+        }
+        int a = Arrays.binarySearch(day, appointment, AppointmentStore.BY_TIME);
+        if (a < 0 || day[a] != appointment) {
+            return day;
+        }
+        return day.length == 1 ? NONE : delete(day, a);
+    }
+
+    // A doctor's day plus many appointments in O(n log n) (bulk loads); of two
+    // with the same ID and time the later one is kept, as with()
+    static Appointment[] withAll(Appointment[] day, List<Appointment> added) {
+        Appointment[] sorted = new Appointment[(day == null ? 0 : day.length) + added.size()];
+        int n = 0;
+        if (day != null) {
+            System.arraycopy(day, 0, sorted, 0, day.length);
+            n = day.length;
+        }
+        for (Appointment appointment : added) {
+            sorted[n++] = appointment;
+        }
+        Arrays.sort(sorted, AppointmentStore.BY_TIME); // Stable
+        int kept = 0;
+        for (Appointment appointment : sorted) {
+            if (kept > 0 && AppointmentStore.BY_TIME.compare(sorted[kept - 1], appointment) == 0) {
+                kept--;
+            }
+            sorted[kept++] = appointment;
+        }
+        return Arrays.copyOf(sorted, kept);
+    }
+
+    // IDs of the doctors with at least one appointment, sorted
+    public List<String> doctorIds() {
+        return Collections.unmodifiableList(Arrays.asList(doctorIds));
+    }
+
+    // A doctor's appointments in time order (shared, read-only)
+    public List<Appointment> forDoctor(String doctorId) {
+        int d = Arrays.binarySearch(doctorIds, doctorId);
+        return d < 0 ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(byDoctor[d]));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Doctor by doctor, each in time order
+    @Override
+    public Iterator<Appointment> iterator() {
+        return new Iterator<Appointment>() {
+            private int doctor;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return doctor < byDoctor.length;
+            }
+
+            @Override
+            public Appointment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Appointment appointment = byDoctor[doctor][next++];
+                if (next == byDoctor[doctor].length) {
+                    doctor++;
+                    next = 0;
+                }
+                return appointment;
+            }
+        };
+    }
+
+    private static <T> T[] insert(T[] array, int at, T value) {
+        T[] result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, at, result, at + 1, array.length - at);
+        result[at] = value;
+        return result;
+    }
+
+    private static <T> T[] delete(T[] array, int at) {
+        T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, at + 1, result, at, array.length - at - 1);
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.*;
+
+// A doctor's free time slots kept as a bitmap at one-minute granularity.
+// Slot strings such as "09:00AM", "9:30 pm" or "14:10" are parsed once into a
+// minute-of-day index, so checking, booking and freeing a slot are O(1) and do
+// not allocate. Iteration always returns slots in time order.
+// Each calendar is its own lock: booking is an atomic check-and-claim per
+// doctor, and bookings against different doctors never contend.
+public class SlotCalendar {
+    static final int SLOTS_PER_DAY = 24 * 60;
+
+    private final long[] freeBits = new long[(SLOTS_PER_DAY + 63) / 64];
+    private final String[] labels = new String[SLOTS_PER_DAY]; // Slot text as first published
+    private final Set<String> unparsedSlots = new LinkedHashSet<>(); // Free slots that are not clock times
+    private int freeCount;
+
+    public SlotCalendar(List<String> slots) {
+        for (String slot : slots) {
+            free(slot);
+        }
+    }
+
+    public synchronized boolean isFree(String slot) {
+        int index = parseSlot(slot);
+        if (index < 0) {
+            return unparsedSlots.contains(slot);
+        }
+        return (freeBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Claim a slot; returns false if it was not free
+    public synchronized boolean book(String slot) {
+        int index = parseSlot(slot);
+        if (index < 0) {
+            if (unparsedSlots.remove(slot)) {
+                freeCount--;
+                return true;
+            }
+            return false;
+        }
+        long mask = 1L << index;
+        if ((freeBits[index >>> 6] & mask) == 0) {
+            return false;
+        }
+        freeBits[index >>> 6] &= ~mask;
+        freeCount--;
+        return true;
+    }
+
+    // Return a slot to the calendar; returns false if it was already free
+    public synchronized boolean free(String slot) {
+        int index = parseSlot(slot);
+        if (index < 0) {
+            if (unparsedSlots.add(slot)) {
+                freeCount++;
+                return true;
+            }
+            return false;
+        }
+        long mask = 1L << index;
+        if ((freeBits[index >>> 6] & mask) != 0) {
+            return false;
+        }
+        freeBits[index >>> 6] |= mask;
+        if (labels[index] == null) {
+            labels[index] = slot;
+        }
+        freeCount++;
+        return true;
+    }
+
+    public synchronized boolean hasFreeSlots() {
+        return freeCount > 0;
+    }
+
+    public synchronized int freeCount() {
+        return freeCount;
+    }
+
+    // Index of the first free slot at or after fromIndex, or -1
+    public synchronized int nextFreeIndex(int fromIndex) {
+        if (fromIndex >= SLOTS_PER_DAY) {
+            return -1;
+        }
+        int word = fromIndex >>> 6;
+        long bits = freeBits[word] & (-1L << fromIndex);
+        while (true) {
+            if (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return index < SLOTS_PER_DAY ? index : -1;
+            }
+            if (++word == freeBits.length) {
+                return -1;
+            }
+            bits = freeBits[word];
+        }
+    }
+
+    public synchronized String labelAt(int index) {
+        return labels[index];
+    }
+
+    // The published label for the same minute as slot, or null
+    public synchronized String labelFor(CharSequence slot) {
+        int index = parseSlot(slot);
+        return index < 0 ? null : labels[index];
+    }
+
+    // Free slots in time order, followed by any slots that are not clock times
+    public synchronized List<String> freeSlots() {
+        List<String> slots = new ArrayList<>(freeCount);
+        for (int i = nextFreeIndex(0); i >= 0; i = nextFreeIndex(i + 1)) {
+            slots.add(labels[i]);
+        }
+        slots.addAll(unparsedSlots);
+        return slots;
+    }
+
+    // Parse "09:00AM", "9am", "9.30 pm" or 24-hour "14:10" into a minute of the day, or -1
+    static int parseSlot(CharSequence slot) {
+        if (slot == null) {
+            return -1;
+        }
+        int end = slot.length();
+        int pos = 0;
+        while (pos < end && slot.charAt(pos) == ' ') {
+            pos++;
+        }
+        while (end > pos && slot.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        // Optional AM/PM suffix
+        int meridiem = 0; // 0 = 24-hour clock, 1 = AM, 2 = PM
+        if (end - pos >= 2 && (slot.charAt(end - 1) == 'M' || slot.charAt(end - 1) == 'm')) {
+            char c = slot.charAt(end - 2);
+            if (c == 'A' || c == 'a') {
+                meridiem = 1;
+            } else if (c == 'P' || c == 'p') {
+                meridiem = 2;
+            } else {
+                return -1;
+            }
+            end -= 2;
+            while (end > pos && slot.charAt(end - 1) == ' ') {
+                end--;
+            }
+        }
+
+        int hour = 0;
+        int hourDigits = 0;
+        while (pos < end && Character.isDigit(slot.charAt(pos)) && hourDigits < 2) {
+            hour = hour * 10 + (slot.charAt(pos++) - '0');
+            hourDigits++;
+        }
+        if (hourDigits == 0) {
+            return -1;
+        }
+
+        int minute = 0;
+        if (pos < end) {
+            char separator = slot.charAt(pos++);
+            if ((separator != ':' && separator != '.') || end - pos != 2) {
+                return -1;
+            }
+            char tens = slot.charAt(pos);
+            char ones = slot.charAt(pos + 1);
+            if (!Character.isDigit(tens) || !Character.isDigit(ones)) {
+                return -1;
+            }
+            minute = (tens - '0') * 10 + (ones - '0');
+        } else if (meridiem == 0) {
+            return -1; // A bare number is not a time
+        }
+        if (minute > 59) {
+            return -1;
+        }
+
+        if (meridiem == 0) {
+            if (hour > 23) {
+                return -1;
+            }
+        } else {
+            if (hour < 1 || hour > 12) {
+                return -1;
+            }
+            hour = hour % 12 + (meridiem == 2 ? 12 : 0);
+        }
+        return hour * 60 + minute;
+    }
+}
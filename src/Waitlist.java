@@ -0,0 +1,179 @@
+import java.util.*;
+
+// Patients waiting for a slot, matched to freed slots by their preferences.
+// Each entry is filed under one key per (scope, slot) it accepts: the scope is
+// its doctor, its specialization or any doctor, and the slot is one acceptable
+// minute of the day or any slot. A freed slot can only match six keys, and
+// each key is a priority queue ordered by wait time, so the longest-waiting
+// eligible patient is found by comparing six queue heads and taken in O(log n).
+// An entry filed under several keys is dropped from the other queues lazily,
+// when it reaches their head.
+// One lock guards the whole waitlist, so matching and withdrawing are atomic.
+public class Waitlist extends AbstractCollection<WaitlistEntry> {
+    private static final String ANY = "*";
+
+    private final Map<String, KeyQueue> queues = new HashMap<>();
+    private final Map<String, WaitlistEntry> entries = new LinkedHashMap<>(); // By entry ID, in wait order
+    private long nextSequence;
+
+    // Add an entry behind everyone already waiting; false if its ID is already here.
+    // An entry that has left the waitlist cannot rejoin (create a new one).
+    @Override
+    public synchronized boolean add(WaitlistEntry entry) {
+        if (entry.removed || entries.putIfAbsent(entry.getEntryId(), entry) != null) {
+            return false;
+        }
+        entry.sequence = nextSequence++;
+        for (String key : keysOf(entry)) {
+            queues.computeIfAbsent(key, k -> new KeyQueue()).offer(entry);
+        }
+        return true;
+    }
+
+    // Remove and return the longest-waiting entry that accepts this doctor and slot, or null
+    public synchronized WaitlistEntry pollBestMatch(Doctor doctor, String timeSlot) {
+        String slot = slotKey(timeSlot);
+        String[] scopes = { doctorScope(doctor.getDoctorId()), specializationScope(doctor.getSpecialization()), ANY };
+        WaitlistEntry best = null;
+        for (String scope : scopes) {
+            best = earlier(best, scope, slot);
+            best = earlier(best, scope, ANY);
+        }
+        if (best != null) {
+            unfile(best);
+        }
+        return best;
+    }
+
+    public synchronized WaitlistEntry findById(String entryId) {
+        return entries.get(entryId);
+    }
+
+    // Withdraw an entry; returns null if it is not waiting
+    public synchronized WaitlistEntry removeById(String entryId) {
+        WaitlistEntry entry = entries.get(entryId);
+        if (entry != null) {
+            unfile(entry);
+        }
+        return entry;
+    }
+
+    // Withdraw the longest-waiting entry for a patient (journal records written before entry IDs)
+    public synchronized WaitlistEntry removeFirstForPatient(String patientId) {
+        for (WaitlistEntry entry : entries.values()) {
+            if (entry.getPatient().getPatientId().equals(patientId)) {
+                unfile(entry);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof WaitlistEntry) || entries.get(((WaitlistEntry) o).getEntryId()) != o) {
+            return false;
+        }
+        unfile((WaitlistEntry) o);
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (WaitlistEntry entry : entries.values()) {
+            entry.removed = true;
+        }
+        entries.clear();
+        queues.clear();
+    }
+
+    // Entries in wait order (a copy, so it is safe to iterate while patients join)
+    @Override
+    public synchronized Iterator<WaitlistEntry> iterator() {
+        return Collections.unmodifiableList(new ArrayList<>(entries.values())).iterator();
+    }
+
+    private WaitlistEntry earlier(WaitlistEntry best, String scope, String slot) {
+        KeyQueue queue = queues.get(scope + "@" + slot);
+        WaitlistEntry head = queue == null ? null : queue.peekLive();
+        if (head != null && (best == null || head.sequence < best.sequence)) {
+            return head;
+        }
+        return best;
+    }
+
+    private void unfile(WaitlistEntry entry) {
+        entries.remove(entry.getEntryId());
+        entry.removed = true;
+        for (String key : keysOf(entry)) {
+            KeyQueue queue = queues.get(key);
+            if (queue != null && queue.release()) {
+                queues.remove(key);
+            }
+        }
+    }
+
+    private static Set<String> keysOf(WaitlistEntry entry) {
+        String scope = entry.getDoctorId() != null ? doctorScope(entry.getDoctorId())
+                     : entry.getSpecialization() != null ? specializationScope(entry.getSpecialization())
+                     : ANY;
+        Set<String> keys = new LinkedHashSet<>();
+        if (entry.getAcceptableSlots().isEmpty()) {
+            keys.add(scope + "@" + ANY);
+        }
+        for (String slot : entry.getAcceptableSlots()) {
+            keys.add(scope + "@" + slotKey(slot)); // Labels for the same minute share a key
+        }
+        return keys;
+    }
+
+    private static String doctorScope(String doctorId) {
+        return "D|" + doctorId;
+    }
+
+    private static String specializationScope(String specialization) {
+        return "S|" + (specialization == null ? "" : specialization.trim().toLowerCase(Locale.ROOT));
+    }
+
+    // "09:00AM" and "9:00 am" are the same slot; other labels must match exactly
+    private static String slotKey(String slot) {
+        int index = SlotCalendar.parseSlot(slot);
+        return index >= 0 ? Integer.toString(index) : slot.trim();
+    }
+
+    // Entries filed under one key, oldest first. Removed entries stay in the heap
+    // until they reach the head; the heap is rebuilt if they come to dominate it.
+    private static class KeyQueue {
+        private final PriorityQueue<WaitlistEntry> heap = new PriorityQueue<>(Comparator.comparingLong((WaitlistEntry e) -> e.sequence));
+        private int live;
+
+        void offer(WaitlistEntry entry) {
+            heap.offer(entry);
+            live++;
+        }
+
+        WaitlistEntry peekLive() {
+            while (!heap.isEmpty() && heap.peek().removed) {
+                heap.poll();
+            }
+            return heap.peek();
+        }
+
+        // One filed entry was removed; returns true when the queue is empty
+        boolean release() {
+            live--;
+            if (live == 0) {
+                return true;
+            }
+            if (heap.size() > 2 * live + 16) {
+                heap.removeIf(e -> e.removed);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.*;
+
+// One patient waiting for a slot. A waiter asks for a specific doctor, or any
+// doctor of a specialization, or any doctor at all (both null), and for a set
+// of acceptable time slots (empty = any slot).
+public class WaitlistEntry {
+    private final String entryId;
+    private final Patient patient;
+    private final String doctorId;       // null = not tied to one doctor
+    private final String specialization; // null = any specialization; only matched when doctorId is null
+    private final List<String> acceptableSlots;
+    private final long enqueuedAt;       // Epoch millis, kept across restarts
+    long sequence;                       // Wait order within this run; set by Waitlist
+    boolean removed;                     // Matched or withdrawn; set by Waitlist
+
+    public WaitlistEntry(String entryId, Patient patient, String doctorId, String specialization,
+                         List<String> acceptableSlots, long enqueuedAt) {
+        this.entryId = entryId;
+        this.patient = patient;
+        this.doctorId = blankToNull(doctorId);
+        this.specialization = blankToNull(specialization);
+        this.acceptableSlots = acceptableSlots == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(acceptableSlots));
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    public String getEntryId() { return entryId; }
+    public Patient getPatient() { return patient; }
+    public String getDoctorId() { return doctorId; }
+    public String getSpecialization() { return specialization; }
+    public List<String> getAcceptableSlots() { return acceptableSlots; }
+    public long getEnqueuedAt() { return enqueuedAt; }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    @Override
+    public String toString() {
+        String wants = doctorId != null ? "doctor " + doctorId
+                     : specialization != null ? specialization
+                     : "any doctor";
+        String slots = acceptableSlots.isEmpty() ? "any slot" : String.join(", ", acceptableSlots);
+        return patient.getName() + " (" + patient.getPatientId() + ") waiting for " + wants + " at " + slots;
+    }
+}
@@ -0,0 +1,121 @@
+import java.time.DayOfWeek;
+import java.util.*;
+
+// A doctor's recurring week: the clock times offered on each day of the week.
+// Dated slots are never stored; BookingIndex and AppointmentManager derive them
+// on demand from this template, so a clinic planned months ahead costs one
+// template per doctor plus the bookings actually made.
+// Immutable. Text form, used in doctors.csv, the journal and the snapshot:
+//   MON=09:00AM;10:00AM|WED=02:00PM;03:00PM
+// Slots that are not clock times ("Evening") cannot be dated and are ignored.
+public class WeeklySchedule {
+    private static final WeeklySchedule EMPTY = new WeeklySchedule(new EnumMap<>(DayOfWeek.class), new HashMap<>());
+
+    private final EnumMap<DayOfWeek, int[]> minutesByDay; // Sorted minutes of the day
+    private final Map<Integer, String> labels;            // Minute -> slot text as first given
+
+    private WeeklySchedule(EnumMap<DayOfWeek, int[]> minutesByDay, Map<Integer, String> labels) {
+        this.minutesByDay = minutesByDay;
+        this.labels = labels;
+    }
+
+    public static WeeklySchedule empty() {
+        return EMPTY;
+    }
+
+    // The same slots on every day of the week
+    public static WeeklySchedule everyDay(List<String> slots) {
+        Map<DayOfWeek, List<String>> days = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            days.put(day, slots);
+        }
+        return of(days);
+    }
+
+    public static WeeklySchedule of(Map<DayOfWeek, List<String>> slotsByDay) {
+        EnumMap<DayOfWeek, int[]> minutesByDay = new EnumMap<>(DayOfWeek.class);
+        Map<Integer, String> labels = new HashMap<>();
+        for (Map.Entry<DayOfWeek, List<String>> day : slotsByDay.entrySet()) {
+            TreeSet<Integer> minutes = new TreeSet<>();
+            for (String slot : day.getValue()) {
+                int minute = SlotCalendar.parseSlot(slot);
+                if (minute >= 0) {
+                    minutes.add(minute);
+                    labels.putIfAbsent(minute, slot.trim());
+                }
+            }
+            if (!minutes.isEmpty()) {
+                minutesByDay.put(day.getKey(), minutes.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return minutesByDay.isEmpty() ? EMPTY : new WeeklySchedule(minutesByDay, labels);
+    }
+
+    // Parse the text form; unknown day names are skipped
+    public static WeeklySchedule parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return EMPTY;
+        }
+        Map<DayOfWeek, List<String>> days = new EnumMap<>(DayOfWeek.class);
+        for (String part : text.split("\\|")) {
+            int equals = part.indexOf('=');
+            DayOfWeek day = equals < 0 ? null : dayOf(part.substring(0, equals));
+            if (day != null) {
+                days.put(day, Arrays.asList(part.substring(equals + 1).split(";")));
+            }
+        }
+        return of(days);
+    }
+
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<DayOfWeek, int[]> day : minutesByDay.entrySet()) {
+            if (text.length() > 0) {
+                text.append('|');
+            }
+            text.append(day.getKey().name(), 0, 3).append('=');
+            int[] minutes = day.getValue();
+            for (int i = 0; i < minutes.length; i++) {
+                if (i > 0) {
+                    text.append(';');
+                }
+                text.append(labels.get(minutes[i]));
+            }
+        }
+        return text.toString();
+    }
+
+    public boolean isEmpty() {
+        return minutesByDay.isEmpty();
+    }
+
+    // Minutes offered on a day of the week, in time order (do not modify)
+    int[] minutesOn(DayOfWeek day) {
+        int[] minutes = minutesByDay.get(day);
+        return minutes == null ? new int[0] : minutes;
+    }
+
+    public boolean offers(DayOfWeek day, int minute) {
+        int[] minutes = minutesByDay.get(day);
+        return minutes != null && Arrays.binarySearch(minutes, minute) >= 0;
+    }
+
+    public String labelAt(int minute) {
+        return labels.get(minute);
+    }
+
+    private static DayOfWeek dayOf(String name) {
+        String key = name.trim().toUpperCase(Locale.ROOT);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (key.length() >= 3 && day.name().startsWith(key)) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.function.BooleanSupplier;
+
+// Saves in the background instead of on the caller's thread. A change only
+// marks the data dirty; a background thread runs the save at most maxStalenessMs
+// after the first unsaved change, so a burst of changes costs one write.
+// flush() saves anything pending right away (used at shutdown).
+// A save that fails leaves the data dirty, so it is retried maxStalenessMs later.
+public class WriteBehindPersister {
+    private final BooleanSupplier save; // Returns false if the data could not be written
+    private final long maxStalenessMs;
+    private final Object stateLock = new Object(); // Guards dirty, dirtySince and closed
+    private final Object saveLock = new Object();  // One save at a time
+    private boolean dirty;
+    private long dirtySince;
+    private boolean closed;
+    private Thread writer;
+    private Thread shutdownFlush; // Registered while the writer runs
+    private long saveCount;
+
+    public WriteBehindPersister(BooleanSupplier save, long maxStalenessMs) {
+        this.save = save;
+        this.maxStalenessMs = Math.max(0, maxStalenessMs);
+    }
+
+    // Record that the data changed; call after the change is visible to save
+    public void markDirty() {
+        if (maxStalenessMs == 0) {
+            synchronized (stateLock) {
+                if (closed) {
+                    return;
+                }
+                dirty = true;
+            }
+            flush(); // No staleness allowed: save on the caller's thread
+            return;
+        }
+        synchronized (stateLock) {
+            if (closed) {
+                return;
+            }
+            if (!dirty) {
+                dirty = true;
+                dirtySince = System.currentTimeMillis();
+                stateLock.notifyAll();
+            }
+            if (writer == null) {
+                startWriter();
+            }
+        }
+    }
+
+    // Save now if anything is pending, waiting for a save already in progress
+    public void flush() {
+        synchronized (saveLock) {
+            synchronized (stateLock) {
+                if (!dirty) {
+                    return;
+                }
+                // Cleared before saving: a change made during the save marks it dirty again
+                dirty = false;
+            }
+            if (!runSave()) {
+                synchronized (stateLock) {
+                    if (!dirty) {
+                        dirty = true;
+                        dirtySince = System.currentTimeMillis();
+                    }
+                }
+            }
+        }
+    }
+
+    // Flush and stop the background thread; safe to call more than once
+    public void close() {
+        Thread running;
+        Thread hook;
+        synchronized (stateLock) {
+            closed = true;
+            running = writer;
+            hook = shutdownFlush;
+            shutdownFlush = null;
+            stateLock.notifyAll();
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        if (hook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // Closed by another shutdown hook; this one finds nothing to flush
+            }
+        }
+    }
+
+    public boolean isDirty() {
+        synchronized (stateLock) {
+            return dirty;
+        }
+    }
+
+    // Number of saves written without an error
+    public long getSaveCount() {
+        synchronized (saveLock) {
+            return saveCount;
+        }
+    }
+
+    private void startWriter() {
+        writer = new Thread(this::runWriter, "csv-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+        // Changes still pending when the JVM exits are saved by this hook
+        shutdownFlush = new Thread(this::flush, "csv-shutdown-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownFlush);
+    }
+
+    private void runWriter() {
+        while (true) {
+            synchronized (stateLock) {
+                // Sleep until something is dirty and its staleness budget is used up
+                while (!closed) {
+                    long wait = dirty ? dirtySince + maxStalenessMs - System.currentTimeMillis() : 0;
+                    if (dirty && wait <= 0) {
+                        break;
+                    }
+                    try {
+                        stateLock.wait(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return; // close() flushes on its own thread
+                }
+            }
+            flush();
+        }
+    }
+
+    private boolean runSave() {
+        boolean saved;
+        try {
+            saved = save.getAsBoolean();
+        } catch (RuntimeException e) {
+            System.err.println(" Error saving data in the background: " + e.getMessage());
+            saved = false;
+        }
+        if (saved) {
+            saveCount++;
+        }
+        return saved;
+    }
+}
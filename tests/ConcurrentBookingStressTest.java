@@ -0,0 +1,212 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Multi-threaded stress test for AppointmentManager.
+// 1. Many threads book and cancel against a few shared doctors; afterwards
+//    no slot may be double-booked and no patient may be lost.
+// 2. Threads book every slot of their own doctors; each slot must be booked
+//    exactly once, for the intended patient.
+//
+// Usage: java -cp src:tests ConcurrentBookingStressTest
+public class ConcurrentBookingStressTest {
+    private static int totalTests = 0;
+    private static int passedTests = 0;
+    private static int failedTests = 0;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(" CONCURRENT BOOKING STRESS TEST");
+        System.out.println("==================================");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = Math.max(4, cores * 2);
+
+        runTest(1, "No double-booked slots under contention (" + threads + " threads)", () -> contentionRun(threads));
+        runTest(2, "Every slot booked once on disjoint doctors (" + threads + " threads)", () -> disjointRun(threads));
+
+        printTestSummary();
+    }
+
+    // Threads race to book the same slots and cancel each other's appointments
+    private static boolean contentionRun(int threads) throws Exception {
+        AppointmentManager manager = new AppointmentManager(PersistenceMode.MEMORY);
+        manager.setVerbose(false);
+
+        int doctorCount = 4;
+        int slotsPerDoctor = 60;
+        List<Doctor> doctors = new ArrayList<>();
+        for (int d = 0; d < doctorCount; d++) {
+            Doctor doctor = new Doctor(manager.generateDoctorId(), "REG-S" + d, "Stress Doctor " + d, "General", slots(slotsPerDoctor), 1000);
+            manager.registerDoctor(doctor);
+            doctors.add(doctor);
+        }
+
+        int opsPerThread = 5_000;
+        AtomicInteger bookingAttempts = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int threadId = t;
+            futures.add(pool.submit(() -> {
+                Random random = new Random(threadId);
+                start.await();
+                for (int i = 0; i < opsPerThread; i++) {
+                    if (random.nextInt(3) == 0 && manager.appointments.size() > 0) {
+                        // Cancel whichever appointment this patient name currently holds
+                        manager.cancelAppointment("Patient " + threadId + "-" + random.nextInt(i + 1));
+                    } else {
+                        Doctor doctor = doctors.get(random.nextInt(doctorCount));
+                        String slot = slotLabel(random.nextInt(slotsPerDoctor));
+                        Patient patient = new Patient(manager.generatePatientId(), "Patient " + threadId + "-" + i,
+                            "0700000000", "stress@example.com", "Colombo", 30, "None");
+                        bookingAttempts.incrementAndGet();
+                        manager.bookAppointment(patient, doctor, slot);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        // Every (doctor, slot) is held by at most one appointment, and is not also free
+        Set<String> taken = new HashSet<>();
+        boolean noDoubleBooking = true;
+        for (Appointment appt : manager.appointments) {
+            String key = appt.getDoctor().getDoctorId() + "@" + appt.getTimeSlot();
+            if (!taken.add(key) || appt.getDoctor().isAvailable(appt.getTimeSlot())) {
+                noDoubleBooking = false;
+            }
+        }
+        // Every slot is either free or booked exactly once
+        int freeSlots = 0;
+        for (Doctor doctor : doctors) {
+            freeSlots += doctor.getSlotCalendar().freeCount();
+        }
+        boolean slotsAccounted = freeSlots + manager.appointments.size() == doctorCount * slotsPerDoctor;
+        // Every booking attempt is active, cancelled, or still waiting in the queue
+        boolean patientsAccounted = bookingAttempts.get()
+            == manager.appointments.size() + manager.cancellationHistory.size() + manager.rescheduleQueue.size();
+
+        System.out.println(" Attempts: " + bookingAttempts.get() + " | Active: " + manager.appointments.size()
+            + " | Cancelled: " + manager.cancellationHistory.size() + " | Queued: " + manager.rescheduleQueue.size()
+            + " | Free slots: " + freeSlots);
+        return noDoubleBooking && slotsAccounted && patientsAccounted;
+    }
+
+    // Each thread books against its own doctors; every slot must end up booked
+    // exactly once, by the patient that thread meant to book it for.
+    // This checks correctness only; throughput at 1, 2, 4 and all threads is
+    // measured by ConcurrentBookingBenchmark in benchmarks/.
+    private static boolean disjointRun(int threads) throws Exception {
+        int slotsPerDoctor = SlotCalendar.SLOTS_PER_DAY;
+        int doctorCount = 128;
+        AppointmentManager manager = new AppointmentManager(PersistenceMode.MEMORY);
+        manager.setVerbose(false);
+        List<Doctor> doctors = new ArrayList<>();
+        for (int d = 0; d < doctorCount; d++) {
+            Doctor doctor = new Doctor(manager.generateDoctorId(), "REG-T" + d, "Doctor " + d, "General", slots(slotsPerDoctor), 1000);
+            manager.registerDoctor(doctor);
+            doctors.add(doctor);
+        }
+        String[] slotLabels = new String[slotsPerDoctor];
+        for (int s = 0; s < slotsPerDoctor; s++) {
+            slotLabels[s] = slotLabel(s);
+        }
+        Patient[] patients = new Patient[doctorCount * slotsPerDoctor];
+        for (int p = 0; p < patients.length; p++) {
+            patients[p] = new Patient("PAT-T" + p, "Disjoint Patient " + p, "0700000000", "t@example.com", "Colombo", 30, "None");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int threadId = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int d = threadId; d < doctorCount; d += threads) {
+                    Doctor doctor = doctors.get(d);
+                    for (int s = 0; s < slotsPerDoctor; s++) {
+                        manager.bookAppointment(patients[d * slotsPerDoctor + s], doctor, slotLabels[s]);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        Set<String> taken = new HashSet<>();
+        boolean bookedAsIntended = true;
+        for (Appointment appt : manager.appointments) {
+            int d = doctors.indexOf(appt.getDoctor());
+            int s = SlotCalendar.parseSlot(appt.getTimeSlot());
+            if (!taken.add(appt.getDoctor().getDoctorId() + "@" + appt.getTimeSlot())
+                || appt.getPatient() != patients[d * slotsPerDoctor + s]) {
+                bookedAsIntended = false;
+            }
+        }
+        boolean allBooked = manager.appointments.size() == doctorCount * slotsPerDoctor
+            && manager.rescheduleQueue.size() == 0;
+
+        System.out.println(" Threads: " + threads + " | Booked: " + manager.appointments.size()
+            + " of " + doctorCount * slotsPerDoctor + " | Queued: " + manager.rescheduleQueue.size());
+        return allBooked && bookedAsIntended;
+    }
+
+    private static List<String> slots(int count) {
+        List<String> slots = new ArrayList<>();
+        for (int s = 0; s < count; s++) {
+            slots.add(slotLabel(s));
+        }
+        return slots;
+    }
+
+    // One-minute slots on a 24-hour clock: "00:00", "00:01", ...
+    private static String slotLabel(int index) {
+        return String.format("%02d:%02d", index / 60, index % 60);
+    }
+
+    private static void runTest(int testNumber, String testName, TestCase testCase) {
+        totalTests++;
+        System.out.println("\n Test Case " + testNumber + ": " + testName);
+        System.out.println("-".repeat(50));
+
+        try {
+            boolean result = testCase.run();
+            if (result) {
+                passedTests++;
+                System.out.println(" PASSED: " + testName);
+            } else {
+                failedTests++;
+                System.out.println(" FAILED: " + testName);
+            }
+        } catch (Exception e) {
+            failedTests++;
+            System.out.println(" ERROR: " + testName + " - " + e.getMessage());
+        }
+    }
+
+    private static void printTestSummary() {
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println(" TEST RESULTS SUMMARY");
+        System.out.println("=".repeat(60));
+        System.out.println(" Total Tests: " + totalTests);
+        System.out.println(" Passed: " + passedTests);
+        System.out.println(" Failed: " + failedTests);
+        System.out.println("=".repeat(60));
+    }
+
+    @FunctionalInterface
+    interface TestCase {
+        boolean run() throws Exception;
+    }
+}
@@ -0,0 +1,718 @@
+import java.io.*;
+import java.nio.file.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Restart round trips: each case writes data through one AppointmentManager,
+// then starts another on the same data directory and checks what it loaded.
+// Runs in a temporary data directory, emptied before every case.
+//
+// Usage: java -cp src:tests PersistenceTest
+public class PersistenceTest {
+    private static int totalTests = 0;
+    private static int passedTests = 0;
+    private static int failedTests = 0;
+    private static Path dataDir;
+
+    public static void main(String[] args) throws Exception {
+        // Must be set before CSVManager is first used; it reads the directory once
+        dataDir = Files.createTempDirectory("hospital-test");
+        System.setProperty("hospital.data.dir", dataDir.toString());
+
+        System.out.println(" PERSISTENCE TEST SUITE");
+        System.out.println("==================================");
+
+        // Change journal: replay after a crash, and a clean shutdown
+        runTest(1, "Journal mode appends instead of rewriting the CSV files", () -> {
+            AppointmentManager manager = start(PersistenceMode.JOURNAL);
+            Doctor doctor = doctor("DOC001", "09:00AM", "10:00AM");
+            manager.registerDoctor(doctor);
+            manager.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            manager.flush();
+            boolean journalled = ChangeJournal.readRecords(CSVManager.getJournalFile()).size() == 3;
+            return journalled && !CSVManager.getAppointmentsFile().exists();
+        });
+
+        runTest(2, "Restart after a crash replays the journal", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            Doctor doctor = doctor("DOC001", "09:00AM", "10:00AM");
+            before.registerDoctor(doctor);
+            before.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            before.flush(); // Then stopped without a save
+
+            AppointmentManager after = restart(PersistenceMode.JOURNAL);
+            Doctor reloaded = after.findDoctorById("DOC001");
+            return reloaded != null && !reloaded.isAvailable("09:00AM") && reloaded.isAvailable("10:00AM")
+                && after.findPatientById("PAT001") != null && after.appointments.size() == 1;
+        });
+
+        runTest(3, "Replayed cancellation frees the slot and is kept in history", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            Doctor doctor = doctor("DOC001", "09:00AM");
+            before.registerDoctor(doctor);
+            before.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            before.cancelAppointment("Suresh");
+            before.flush();
+
+            AppointmentManager after = restart(PersistenceMode.JOURNAL);
+            return after.appointments.size() == 0 && after.cancellationHistory.size() == 1
+                && after.findDoctorById("DOC001").isAvailable("09:00AM");
+        });
+
+        runTest(4, "Replaying the same journal twice changes nothing", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            Doctor doctor = doctor("DOC001", "09:00AM", "10:00AM");
+            before.registerDoctor(doctor);
+            before.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            before.bookAppointment(patient("PAT002", "Kamal"), doctor, "10:00AM");
+            before.cancelAppointment("Kamal");
+            before.flush();
+
+            AppointmentManager first = restart(PersistenceMode.JOURNAL);
+            first.flush();
+            AppointmentManager second = restart(PersistenceMode.JOURNAL);
+            return first.appointments.size() == 1 && second.appointments.size() == 1
+                && second.cancellationHistory.size() == 1 && second.getPatientCount() == 2;
+        });
+
+        runTest(5, "Clean shutdown folds the journal into the CSV files", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            Doctor doctor = doctor("DOC001", "09:00AM");
+            before.registerDoctor(doctor);
+            before.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            before.shutdown();
+
+            boolean emptied = ChangeJournal.readRecords(CSVManager.getJournalFile()).isEmpty();
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean loaded = after.appointments.size() == 1 && !after.findDoctorById("DOC001").isAvailable("09:00AM");
+            after.shutdown();
+            return emptied && loaded;
+        });
+
+        // ID counters
+        runTest(6, "Allocated IDs are not reused after a restart", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            before.generatePatientId();
+            before.generatePatientId(); // Handed out, but the patients were never registered
+            before.saveAllDataToCSV();
+            before.shutdown();
+
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            String next = after.generatePatientId();
+            after.shutdown();
+            return next.equals("PAT003");
+        });
+
+        // Binary snapshot
+        runTest(7, "Restart loads everything from the snapshot", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            addSampleData(before);
+            before.shutdown();
+            // Without the CSV files only the snapshot can supply the data. The
+            // others are backdated: a snapshot is only used if it is strictly newer.
+            Files.delete(CSVManager.getAppointmentsFile().toPath());
+            Files.delete(dataDir.resolve("doctors.csv"));
+            backdateCsvFiles();
+
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean loaded = hasSampleData(after);
+            after.shutdown();
+            return loaded;
+        });
+
+        runTest(8, "A snapshot from a newer version is rejected and the CSV files are used", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            addSampleData(before);
+            before.shutdown();
+            File snapshot = CSVManager.getSnapshotFile();
+            try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+                file.seek(4);
+                file.writeInt(99); // Version follows the magic number
+            }
+            backdateCsvFiles(); // Otherwise the snapshot would be loaded
+
+            boolean rejected = false;
+            try {
+                BinarySnapshot.read(snapshot);
+            } catch (IOException e) {
+                rejected = e.getMessage().contains("version 99");
+            }
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean loaded = hasSampleData(after);
+            after.shutdown();
+            return rejected && loaded;
+        });
+
+        runTest(9, "A corrupted snapshot fails its checksum and the CSV files are used", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            addSampleData(before);
+            before.shutdown();
+            File snapshot = CSVManager.getSnapshotFile();
+            try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+                file.seek(file.length() - 1);
+                int last = file.read();
+                file.seek(file.length() - 1);
+                file.write(last ^ 0xFF);
+            }
+            backdateCsvFiles(); // Otherwise the snapshot would be loaded
+
+            boolean rejected = false;
+            try {
+                BinarySnapshot.read(snapshot);
+            } catch (IOException e) {
+                rejected = e.getMessage().contains("checksum");
+            }
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean loaded = hasSampleData(after);
+            after.shutdown();
+            return rejected && loaded;
+        });
+
+        runTest(10, "A snapshot older than a CSV file is not used", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            addSampleData(before);
+            before.shutdown();
+            // An edit made to patients.csv after the snapshot was written
+            File patients = dataDir.resolve("patients.csv").toFile();
+            Files.write(patients.toPath(), Arrays.asList("PAT009,Ruwan,0755555555,ruwan@gmail.com,Matara,50,Asthma"),
+                        StandardOpenOption.APPEND);
+            patients.setLastModified(CSVManager.getSnapshotFile().lastModified() + 2000);
+
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean loaded = hasSampleData(after) && after.findPatientById("PAT009") != null;
+            after.shutdown();
+            return loaded;
+        });
+
+        // Write-behind saves
+        runTest(11, "A burst of changes is saved once, after the staleness budget", () -> {
+            AtomicInteger saves = new AtomicInteger();
+            WriteBehindPersister persister = new WriteBehindPersister(() -> saves.incrementAndGet() > 0, 200);
+            for (int i = 0; i < 1000; i++) {
+                persister.markDirty();
+            }
+            boolean deferred = saves.get() == 0; // Nothing is written on the caller's thread
+            Thread.sleep(800);
+            boolean savedOnce = saves.get() == 1 && persister.getSaveCount() == 1 && !persister.isDirty();
+            persister.close();
+            return deferred && savedOnce;
+        });
+
+        runTest(12, "flush() saves pending changes at once, and nothing when clean", () -> {
+            AtomicInteger saves = new AtomicInteger();
+            WriteBehindPersister persister = new WriteBehindPersister(() -> saves.incrementAndGet() > 0, 60_000);
+            persister.markDirty();
+            persister.flush();
+            persister.flush();
+            boolean flushed = saves.get() == 1;
+            persister.close();
+            return flushed && saves.get() == 1;
+        });
+
+        runTest(13, "close() saves what is pending and later changes are ignored", () -> {
+            AtomicInteger saves = new AtomicInteger();
+            WriteBehindPersister persister = new WriteBehindPersister(() -> saves.incrementAndGet() > 0, 60_000);
+            persister.markDirty();
+            persister.close();
+            persister.markDirty();
+            persister.close();
+            return saves.get() == 1;
+        });
+
+        runTest(14, "CSV mode writes the files in the background", () -> {
+            AppointmentManager manager = start(PersistenceMode.CSV);
+            Doctor doctor = doctor("DOC001", "09:00AM", "10:00AM");
+            manager.registerDoctor(doctor);
+            for (int i = 1; i <= 2; i++) {
+                manager.bookAppointment(patient("PAT00" + i, "Patient " + i), doctor, i == 1 ? "09:00AM" : "10:00AM");
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (manager.getSaveCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            manager.flush();
+            boolean written = CSVManager.getAppointmentsFile().exists()
+                && Files.readAllLines(CSVManager.getAppointmentsFile().toPath()).size() == 3;
+            boolean coalesced = manager.getSaveCount() < 5; // One save per change would be 5
+            manager.shutdown();
+            return written && coalesced;
+        });
+
+        // Merging duplicate patients offline
+        runTest(15, "Duplicate patients are merged and every reference follows", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            Doctor doctor = doctor("DOC001", "09:00AM", "10:00AM");
+            before.registerDoctor(doctor);
+            before.registerPatient(new Patient("PAT001", "Suresh Perera", "0711111111", "suresh@gmail.com", "Colombo", 45, "None"));
+            Patient duplicate = new Patient("PAT002", "suresh perera", "071-111-1111", "", "Colombo", 45, "None");
+            before.bookAppointment(duplicate, doctor, "10:00AM");
+            before.cancelAppointment("suresh perera");
+            before.bookAppointment(duplicate, doctor, "09:00AM");
+            before.joinWaitlist(duplicate, doctor, null, Collections.emptyList());
+            before.registerPatient(patient("PAT003", "Kamal")); // Not a duplicate
+            before.shutdown();
+
+            PatientDeduplicator deduplicator = new PatientDeduplicator();
+            boolean ran = deduplicator.deduplicate() && deduplicator.getPatientsMerged() == 1;
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean merged = after.getPatientCount() == 2 && after.findPatientById("PAT002") == null
+                && after.findAppointmentsByPatientId("PAT001").size() == 1
+                && after.cancellationHistory.newest(0, 1).get(0).getPatient().getPatientId().equals("PAT001")
+                && after.getWaitlist().size() == 1 && after.getWaitlist().get(0).getPatient().getPatientId().equals("PAT001");
+            after.shutdown();
+            return ran && merged;
+        });
+
+        runTest(16, "Merging refuses to run while the journal holds unsaved changes", () -> {
+            AppointmentManager manager = start(PersistenceMode.JOURNAL);
+            manager.registerPatient(patient("PAT001", "Suresh"));
+            manager.flush(); // Still running: the change is only in the journal
+            boolean refused = !new PatientDeduplicator().deduplicate();
+            manager.shutdown();
+            boolean allowedAfterShutdown = new PatientDeduplicator().deduplicate();
+            return refused && allowedAfterShutdown;
+        });
+
+        // Cancellation archive
+        runTest(17, "Old cancellations are archived and still readable after a restart", () -> {
+            System.setProperty("hospital.cancellations.recent", "2");
+            try {
+                AppointmentManager before = start(PersistenceMode.CSV);
+                Doctor doctor = doctor("DOC001", "09:00AM");
+                before.registerDoctor(doctor);
+                for (int i = 1; i <= 5; i++) {
+                    before.bookAppointment(patient("PAT00" + i, "Patient " + i), doctor, "09:00AM");
+                    before.cancelAppointment("Patient " + i);
+                }
+                before.shutdown();
+                File[] segments = CSVManager.getCancellationArchiveDir().listFiles();
+                // Two archived, the rest (less than a segment past the ring) still in cancellations.csv
+                boolean archived = segments != null && segments.length == 1
+                    && Files.readAllLines(CSVManager.getCancellationsFile().toPath()).size() == 4;
+
+                AppointmentManager after = restart(PersistenceMode.CSV);
+                List<String> names = new ArrayList<>();
+                for (Appointment appt : after.cancellationHistory.newest(0, 10)) {
+                    names.add(appt.getPatient().getName());
+                }
+                boolean readable = after.cancellationHistory.size() == 5 && after.cancellationHistory.inMemoryCount() == 3
+                    && names.equals(Arrays.asList("Patient 5", "Patient 4", "Patient 3", "Patient 2", "Patient 1"));
+                after.shutdown();
+                return archived && readable;
+            } finally {
+                System.clearProperty("hospital.cancellations.recent");
+            }
+        });
+
+        // Dated bookings
+        LocalDate monday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+        runTest(18, "Dated bookings and weekly templates survive a restart", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            Doctor doctor = doctor("DOC001", "09:00AM");
+            doctor.setWeeklySchedule(WeeklySchedule.parse("MON=09:00AM;10:00AM"));
+            before.registerDoctor(doctor);
+            before.bookDatedAppointment(patient("PAT001", "Suresh"), doctor, monday, "10:00AM");
+            before.shutdown();
+
+            AppointmentManager fromSnapshot = restart(PersistenceMode.CSV);
+            boolean snapshotOk = hasMondayBooking(fromSnapshot, monday);
+            fromSnapshot.shutdown();
+            Files.delete(CSVManager.getSnapshotFile().toPath());
+            AppointmentManager fromCsv = restart(PersistenceMode.CSV);
+            boolean csvOk = hasMondayBooking(fromCsv, monday);
+            fromCsv.shutdown();
+            return snapshotOk && csvOk;
+        });
+
+        runTest(19, "Dated rows with a bad date or time are skipped, not fatal", () -> {
+            AppointmentManager before = start(PersistenceMode.CSV);
+            Doctor doctor = doctor("DOC001", "09:00AM");
+            before.registerDoctor(doctor);
+            before.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            before.shutdown();
+            Files.delete(CSVManager.getSnapshotFile().toPath());
+            Files.write(CSVManager.getAppointmentsFile().toPath(), Arrays.asList(
+                "APT901,PAT001,Suresh,DOC001,Dr. DOC001,General,10:00AM,1500.00,2026-13-45",
+                "APT902,PAT001,Suresh,DOC001,Dr. DOC001,General,Morning,1500.00," + monday),
+                StandardOpenOption.APPEND);
+
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean loaded = after.appointments.size() == 1 && after.findAppointmentById("APT001") != null;
+            after.shutdown();
+            return loaded;
+        });
+
+        // Partitioned data directory
+        System.setProperty("hospital.data.patientsPerPartition", "2");
+        runTest(20, "The partitioned layout saves and loads the same data", () -> {
+            System.setProperty("hospital.data.layout", "partitioned");
+            try {
+                AppointmentManager before = start(PersistenceMode.CSV);
+                addSampleData(before);
+                before.shutdown();
+                Set<String> appointmentFiles = fileNames(dataDir.resolve("appointments"));
+                Set<String> patientFiles = fileNames(dataDir.resolve("patients"));
+                boolean partitioned = appointmentFiles.equals(Collections.singleton("DOC001.csv"))
+                    && patientFiles.equals(new HashSet<>(Arrays.asList("PAT-0.csv", "PAT-2.csv", "PAT-4.csv")))
+                    && !CSVManager.getAppointmentsFile().exists() && !Files.exists(dataDir.resolve("patients.csv"));
+
+                Files.delete(CSVManager.getSnapshotFile().toPath());
+                AppointmentManager after = restart(PersistenceMode.CSV);
+                boolean loaded = hasSampleData(after) && after.getPatientCount() == 4;
+                after.shutdown();
+                return partitioned && loaded;
+            } finally {
+                System.clearProperty("hospital.data.layout");
+            }
+        });
+
+        runTest(21, "A change rewrites only the partitions it touched", () -> {
+            System.setProperty("hospital.data.layout", "partitioned");
+            try {
+                AppointmentManager manager = start(PersistenceMode.CSV);
+                Doctor first = doctor("DOC001", "09:00AM");
+                Doctor second = doctor("DOC002", "09:00AM", "10:00AM");
+                manager.registerDoctor(first);
+                manager.registerDoctor(second);
+                manager.bookAppointment(patient("PAT001", "Suresh"), first, "09:00AM");
+                manager.bookAppointment(patient("PAT002", "Kamal"), second, "09:00AM");
+                manager.flush();
+                long old = System.currentTimeMillis() - 60_000;
+                File[] partitions = { dataDir.resolve("appointments/DOC001.csv").toFile(), dataDir.resolve("appointments/DOC002.csv").toFile(),
+                                      dataDir.resolve("patients/PAT-0.csv").toFile(), dataDir.resolve("patients/PAT-2.csv").toFile() };
+                for (File partition : partitions) {
+                    partition.setLastModified(old);
+                }
+
+                manager.bookAppointment(patient("PAT009", "Sunil"), second, "10:00AM");
+                manager.flush();
+                boolean untouched = partitions[0].lastModified() == old && partitions[2].lastModified() == old
+                    && partitions[3].lastModified() == old;
+                boolean rewritten = partitions[1].lastModified() > old && Files.readAllLines(partitions[1].toPath()).size() == 3
+                    && Files.exists(dataDir.resolve("patients/PAT-8.csv"));
+                manager.shutdown();
+                return untouched && rewritten;
+            } finally {
+                System.clearProperty("hospital.data.layout");
+            }
+        });
+
+        runTest(22, "Switching layouts in either direction keeps every record", () -> {
+            AppointmentManager flat = start(PersistenceMode.CSV);
+            addSampleData(flat);
+            flat.shutdown();
+
+            System.setProperty("hospital.data.layout", "partitioned");
+            boolean migrated;
+            boolean partitionedOk;
+            try {
+                AppointmentManager partitioned = restart(PersistenceMode.CSV);
+                partitioned.registerPatient(patient("PAT005", "Ruwan")); // The first save writes every partition
+                partitioned.flush();
+                migrated = !CSVManager.getAppointmentsFile().exists() && !Files.exists(dataDir.resolve("patients.csv"))
+                    && Files.exists(dataDir.resolve("appointments/DOC001.csv"));
+                partitioned.shutdown();
+                Files.delete(CSVManager.getSnapshotFile().toPath());
+                AppointmentManager reloaded = restart(PersistenceMode.CSV);
+                partitionedOk = hasSampleData(reloaded) && reloaded.findPatientById("PAT005") != null;
+                reloaded.shutdown();
+            } finally {
+                System.clearProperty("hospital.data.layout");
+            }
+
+            // Back to flat: only patients change, so appointments stay partitioned until they do
+            AppointmentManager back = restart(PersistenceMode.CSV);
+            back.registerPatient(patient("PAT006", "Dilani"));
+            back.shutdown();
+            Files.delete(CSVManager.getSnapshotFile().toPath());
+            AppointmentManager after = restart(PersistenceMode.CSV);
+            boolean flatOk = hasSampleData(after) && after.getPatientCount() == 6 && !Files.exists(dataDir.resolve("patients"));
+            after.shutdown();
+            return migrated && partitionedOk && flatOk;
+        });
+        System.clearProperty("hospital.data.patientsPerPartition");
+
+        // Checkpoints: snapshot plus the journal tail
+        runTest(23, "A checkpoint empties the journal; a restart loads the snapshot", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            addSampleData(before);
+            before.checkpoint();
+            File journal = CSVManager.getJournalFile();
+            boolean dropped = ChangeJournal.readRecords(journal).isEmpty() && ChangeJournal.readHeader(journal).afterCheckpoint
+                && CSVManager.getSnapshotFile().exists() && !CSVManager.getAppointmentsFile().exists();
+
+            AppointmentManager after = restart(PersistenceMode.JOURNAL); // After a crash: no CSV files at all
+            return dropped && hasSampleData(after);
+        });
+
+        runTest(24, "Changes after a checkpoint are replayed on top of it, once", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            addSampleData(before);
+            before.checkpoint();
+            before.cancelAppointment("Suresh"); // 09:00AM goes to Nadeesha, who was waiting
+            before.registerPatient(patient("PAT005", "Ruwan"));
+            before.flush();
+            boolean tailOnly = ChangeJournal.readRecords(CSVManager.getJournalFile()).size() == 4;
+
+            AppointmentManager first = restart(PersistenceMode.JOURNAL);
+            first.flush();
+            AppointmentManager second = restart(PersistenceMode.JOURNAL);
+            List<Appointment> schedule = second.getDoctorSchedule("DOC001");
+            return tailOnly && schedule.size() == 2 && schedule.get(0).getPatient().getName().equals("Nadeesha")
+                && second.cancellationHistory.size() == 2 && second.getWaitlist().isEmpty()
+                && second.findPatientById("PAT005") != null;
+        });
+
+        runTest(25, "Checkpoints run on their own at the configured interval", () -> {
+            System.setProperty("hospital.checkpoint.intervalMs", "100");
+            try {
+                AppointmentManager manager = start(PersistenceMode.JOURNAL);
+                addSampleData(manager);
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!ChangeJournal.readHeader(CSVManager.getJournalFile()).afterCheckpoint && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(20);
+                }
+                boolean checkpointed = ChangeJournal.readHeader(CSVManager.getJournalFile()).afterCheckpoint
+                    && CSVManager.getSnapshotFile().exists();
+                manager.shutdown();
+                return checkpointed;
+            } finally {
+                System.clearProperty("hospital.checkpoint.intervalMs");
+            }
+        });
+
+        runTest(26, "A checkpoint archives old cancellations so the snapshot stays small", () -> {
+            System.setProperty("hospital.cancellations.recent", "2");
+            try {
+                AppointmentManager before = start(PersistenceMode.JOURNAL);
+                Doctor doctor = doctor("DOC001", "09:00AM");
+                before.registerDoctor(doctor);
+                for (int i = 1; i <= 5; i++) {
+                    before.bookAppointment(patient("PAT00" + i, "Patient " + i), doctor, "09:00AM");
+                    before.cancelAppointment("Patient " + i);
+                }
+                before.checkpoint();
+                File[] segments = CSVManager.getCancellationArchiveDir().listFiles();
+                boolean archived = segments != null && segments.length == 1 && before.cancellationHistory.inMemoryCount() == 3;
+
+                AppointmentManager after = restart(PersistenceMode.JOURNAL);
+                List<String> names = new ArrayList<>();
+                for (Appointment appt : after.cancellationHistory.newest(0, 10)) {
+                    names.add(appt.getPatient().getName());
+                }
+                return archived && after.cancellationHistory.size() == 5
+                    && names.equals(Arrays.asList("Patient 5", "Patient 4", "Patient 3", "Patient 2", "Patient 1"));
+            } finally {
+                System.clearProperty("hospital.cancellations.recent");
+            }
+        });
+
+        // Journal: a crash between saving the CSV files and emptying the journal
+        runTest(27, "Journal records already saved to CSV are not replayed again", () -> {
+            AppointmentManager before = start(PersistenceMode.JOURNAL);
+            Doctor doctor = doctor("DOC001", "09:00AM");
+            before.registerDoctor(doctor);
+            before.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            before.cancelAppointment("Suresh"); // The slot is free again, so the booking could be replayed
+            before.flush();
+            CSVManager.saveAllData(before); // Crash before the snapshot and the truncate
+            if (CSVManager.getSnapshotFile().exists() || ChangeJournal.readRecords(CSVManager.getJournalFile()).isEmpty()) {
+                return false;
+            }
+
+            AppointmentManager after = restart(PersistenceMode.JOURNAL);
+            boolean once = after.cancellationHistory.size() == 1 && after.appointments.size() == 0
+                && after.findDoctorById("DOC001").isAvailable("09:00AM");
+            after.registerPatient(patient("PAT002", "Kamal")); // Later records are still replayed
+            after.flush();
+            AppointmentManager again = restart(PersistenceMode.JOURNAL);
+            return once && again.findPatientById("PAT002") != null && again.cancellationHistory.size() == 1;
+        });
+
+        runTest(28, "Cancellation IDs in the CSV files use the configured ID width", () -> {
+            System.setProperty("hospital.id.width", "5");
+            try {
+                AppointmentManager manager = start(PersistenceMode.CSV);
+                Doctor doctor = doctor("DOC00001", "09:00AM");
+                manager.registerDoctor(doctor);
+                manager.bookAppointment(patient(manager.generatePatientId(), "Suresh"), doctor, "09:00AM");
+                manager.cancelAppointment("Suresh");
+                manager.saveAllDataToCSV();
+                manager.shutdown();
+                List<String> lines = Files.readAllLines(CSVManager.getCancellationsFile().toPath());
+                return lines.size() == 2 && lines.get(1).startsWith("CAN00001,APT00001,PAT00001,");
+            } finally {
+                System.clearProperty("hospital.id.width");
+            }
+        });
+
+        // Write-behind saves: failures and close()
+        runTest(29, "A failed background save is retried", () -> {
+            AtomicInteger attempts = new AtomicInteger();
+            WriteBehindPersister persister = new WriteBehindPersister(() -> attempts.incrementAndGet() > 1, 100);
+            persister.markDirty();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (persister.getSaveCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            boolean retried = attempts.get() == 2 && persister.getSaveCount() == 1 && !persister.isDirty();
+            persister.close();
+            return retried;
+        });
+
+        runTest(30, "Without a staleness budget, changes after close() are ignored too", () -> {
+            AtomicInteger saves = new AtomicInteger();
+            WriteBehindPersister persister = new WriteBehindPersister(() -> saves.incrementAndGet() > 0, 0);
+            persister.markDirty();
+            boolean savedAtOnce = saves.get() == 1;
+            persister.close();
+            persister.markDirty();
+            return savedAtOnce && saves.get() == 1 && !persister.isDirty();
+        });
+
+        runTest(31, "CSV files that could not be written are saved by the next save", () -> {
+            AppointmentManager manager = start(PersistenceMode.CSV);
+            Doctor doctor = doctor("DOC001", "09:00AM");
+            manager.registerDoctor(doctor);
+            manager.flush();
+            File appointmentsFile = CSVManager.getAppointmentsFile();
+            Files.deleteIfExists(appointmentsFile.toPath());
+            appointmentsFile.mkdir(); // A directory in its place: the next write fails
+            manager.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+            manager.flush();
+            boolean failed = appointmentsFile.isDirectory();
+            appointmentsFile.delete();
+            manager.flush(); // Nothing changed since the failure
+            boolean saved = appointmentsFile.isFile()
+                && Files.readAllLines(appointmentsFile.toPath()).stream().anyMatch(line -> line.contains("Suresh"));
+            manager.shutdown();
+            return failed && saved;
+        });
+
+        printTestSummary();
+        clearDataDir();
+        Files.deleteIfExists(dataDir);
+    }
+
+    // A manager on an empty data directory
+    private static AppointmentManager start(PersistenceMode mode) throws IOException {
+        clearDataDir();
+        return restart(mode);
+    }
+
+    // A manager on whatever the previous one left behind
+    private static AppointmentManager restart(PersistenceMode mode) {
+        AppointmentManager manager = new AppointmentManager(mode);
+        manager.setVerbose(false);
+        return manager;
+    }
+
+    // One doctor with a booked slot, a slot handed to a waiting patient after a
+    // cancellation, a free slot, and a patient still on the waitlist
+    private static void addSampleData(AppointmentManager manager) {
+        Doctor doctor = doctor("DOC001", "09:00AM", "10:00AM", "11:00AM");
+        manager.registerDoctor(doctor);
+        manager.bookAppointment(patient("PAT001", "Suresh"), doctor, "09:00AM");
+        manager.bookAppointment(patient("PAT002", "Kamal"), doctor, "10:00AM");
+        manager.bookAppointment(patient("PAT003", "Sunil"), doctor, "09:00AM");
+        manager.cancelAppointment("Kamal");
+        manager.bookAppointment(patient("PAT004", "Nadeesha"), doctor, "09:00AM");
+    }
+
+    private static boolean hasSampleData(AppointmentManager manager) {
+        Doctor doctor = manager.findDoctorById("DOC001");
+        if (doctor == null || !doctor.getAvailableTimeSlots().equals(Arrays.asList("11:00AM"))) {
+            return false;
+        }
+        List<String> booked = new ArrayList<>();
+        for (Appointment appt : manager.getDoctorSchedule("DOC001")) {
+            booked.add(appt.getPatient().getName() + "@" + appt.getTimeSlot());
+        }
+        List<WaitlistEntry> waiting = manager.getWaitlist();
+        return booked.equals(Arrays.asList("Suresh@09:00AM", "Sunil@10:00AM")) && manager.findPatientById("PAT002") != null
+            && manager.cancellationHistory.size() == 1 && waiting.size() == 1
+            && waiting.get(0).getPatient().getName().equals("Nadeesha");
+    }
+
+    private static boolean hasMondayBooking(AppointmentManager manager, LocalDate monday) {
+        Doctor doctor = manager.findDoctorById("DOC001");
+        List<Appointment> booked = manager.getAppointmentsOn(monday);
+        return doctor != null && booked.size() == 1 && booked.get(0).getTimeSlot().equals("10:00AM")
+            && !manager.bookDatedAppointment(patient("PAT002", "Kamal"), doctor, monday, "10:00AM")
+            && manager.findFreeDatedSlots(doctor, monday, monday, 5).size() == 1;
+    }
+
+    private static Set<String> fileNames(Path dir) {
+        String[] names = dir.toFile().list();
+        return names == null ? Collections.emptySet() : new HashSet<>(Arrays.asList(names));
+    }
+
+    // Make every CSV file older than the snapshot, even on coarse file times
+    private static void backdateCsvFiles() throws IOException {
+        long before = CSVManager.getSnapshotFile().lastModified() - 2000;
+        try (java.util.stream.Stream<Path> paths = Files.walk(dataDir)) {
+            paths.filter(path -> path.toString().endsWith(".csv"))
+                 .forEach(path -> path.toFile().setLastModified(before));
+        }
+    }
+
+    private static void clearDataDir() throws IOException {
+        try (java.util.stream.Stream<Path> paths = Files.walk(dataDir)) {
+            paths.sorted(Comparator.reverseOrder())
+                 .filter(path -> !path.equals(dataDir))
+                 .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static Doctor doctor(String doctorId, String... slots) {
+        return new Doctor(doctorId, "REG-" + doctorId, "Dr. " + doctorId, "General", new ArrayList<>(Arrays.asList(slots)), 1500);
+    }
+
+    private static Patient patient(String patientId, String name) {
+        return new Patient(patientId, name, "07" + patientId.substring(3) + "000000", name.toLowerCase() + "@gmail.com", "Colombo", 30, "None");
+    }
+
+    private static void runTest(int testNumber, String testName, TestCase testCase) {
+        totalTests++;
+        System.out.println("\n Test Case " + testNumber + ": " + testName);
+        System.out.println("-".repeat(50));
+
+        try {
+            boolean result = testCase.run();
+            if (result) {
+                passedTests++;
+                System.out.println(" PASSED: " + testName);
+            } else {
+                failedTests++;
+                System.out.println(" FAILED: " + testName);
+            }
+        } catch (Exception e) {
+            failedTests++;
+            System.out.println(" ERROR: " + testName + " - " + e.getMessage());
+        }
+    }
+
+    private static void printTestSummary() {
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println(" TEST RESULTS SUMMARY");
+        System.out.println("=".repeat(60));
+        System.out.println(" Total Tests: " + totalTests);
+        System.out.println(" Passed: " + passedTests);
+        System.out.println(" Failed: " + failedTests);
+
+        if (failedTests == 0) {
+            System.out.println("\n ALL TESTS PASSED!");
+        } else {
+            System.out.println("\n  Some tests failed. Please check the implementation.");
+        }
+        System.out.println("=".repeat(60));
+    }
+
+    @FunctionalInterface
+    interface TestCase {
+        boolean run() throws Exception;
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Measures CSV startup load time for growing appointment counts.
+// Load time should grow linearly: ns per appointment stays roughly constant.
+// Each size is loaded with 1, 2, 4, ... loader threads up to the core count,
+// after checking that the parallel loader returns exactly the rows a
+// line-by-line read gives. Bytes allocated and young-gen collections during
+// the measured load show the GC pressure of startup. Finally a full restart
+// from the CSV files is compared with a restart from the binary snapshot.
+//
+// Usage: java -cp src:tests StartupLoadBenchmark [sizes...]
+public class StartupLoadBenchmark {
+    private static final int SLOTS_PER_DOCTOR = 100;
+
+    public static void main(String[] args) throws IOException {
+        // Point CSVManager at a scratch directory before it is first used
+        Path dataDir = Files.createTempDirectory("hospital-bench");
+        System.setProperty("hospital.data.dir", dataDir.toString());
+
+        int[] sizes = { 10_000, 100_000, 1_000_000 };
+        if (args.length > 0) {
+            sizes = Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        }
+
+        System.out.println(" STARTUP LOAD BENCHMARK");
+        System.out.println("=".repeat(60));
+        System.out.printf(" %12s %12s %8s %12s %14s %8s %14s %6s %8s%n", "Appointments", "Patients", "Threads",
+            "Load (ms)", "ns/appointment", "Speedup", "B/appointment", "GCs", "GC (ms)");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int size : sizes) {
+            writeDataset(dataDir, size);
+            verifyAgainstSequential(dataDir);
+            long baseline = 0;
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                CSVManager.loader = new ParallelCsvLoader(threads);
+                // Warm up so the first size does not pay for JIT compilation
+                for (int i = 0; i < 3; i++) {
+                    load();
+                }
+                long[] before = gcUsage();
+                long elapsed = load();
+                long[] after = gcUsage();
+                if (threads == 1) {
+                    baseline = elapsed;
+                }
+                System.out.printf(" %12d %12d %8d %12.1f %14.1f %7.2fx %14.0f %6d %8d%n", size, size / 2, threads,
+                    elapsed / 1e6, (double) elapsed / size, (double) baseline / elapsed,
+                    (double) (after[0] - before[0]) / size, after[1] - before[1], after[2] - before[2]);
+            }
+            compareSnapshotRestart(dataDir, size);
+        }
+        if (cores == 1) {
+            System.out.println(" Only one core available; loader speedup cannot be observed on this machine.");
+        }
+        System.out.println("=".repeat(60));
+    }
+
+    // Time a full AppointmentManager start from the CSV files and from a snapshot of the same data
+    private static void compareSnapshotRestart(Path dataDir, int size) throws IOException {
+        System.setProperty("hospital.snapshot", "false");
+        long csvElapsed = timeRestart();
+        AppointmentManager fromCsv = new AppointmentManager(PersistenceMode.CSV);
+        CSVManager.saveSnapshot(fromCsv, false);
+        String csvState = summarize(fromCsv);
+        fromCsv = null; // Only one manager alive at a time, so both runs see the same heap
+
+        System.setProperty("hospital.snapshot", "true");
+        long snapshotElapsed = timeRestart();
+        if (!csvState.equals(summarize(new AppointmentManager(PersistenceMode.CSV)))) {
+            throw new IllegalStateException("Snapshot restart differs from CSV restart");
+        }
+
+        long csvBytes = 0;
+        for (String name : new String[] { "doctors.csv", "patients.csv", "appointments.csv", "cancellations.csv" }) {
+            csvBytes += Files.size(dataDir.resolve(name));
+        }
+        long snapshotBytes = Files.size(dataDir.resolve("snapshot.bin"));
+        Files.delete(dataDir.resolve("snapshot.bin"));
+        System.out.printf(" %12d restart: CSV %.1f ms (%d KB) | snapshot %.1f ms (%d KB) | %.2fx faster%n", size,
+            csvElapsed / 1e6, csvBytes / 1024, snapshotElapsed / 1e6, snapshotBytes / 1024, (double) csvElapsed / snapshotElapsed);
+    }
+
+    // Best of three manager starts, collecting garbage in between
+    private static long timeRestart() {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            long start = System.nanoTime();
+            new AppointmentManager(PersistenceMode.CSV);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    // Counts plus every doctor's free slots, for comparing two loads
+    private static String summarize(AppointmentManager manager) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(manager.appointments.size()).append('/').append(manager.cancellationHistory.size());
+        for (Doctor doctor : manager.getAllDoctors()) {
+            summary.append(doctor.getDoctorId()).append(doctor.getAvailableTimeSlots());
+        }
+        return summary.toString();
+    }
+
+    // { bytes allocated by all live threads, GC collections, GC time in ms }
+    private static long[] gcUsage() {
+        long[] usage = new long[3];
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+            for (long bytes : allocation.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                usage[0] += Math.max(0, bytes);
+            }
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            usage[1] += Math.max(0, gc.getCollectionCount());
+            usage[2] += Math.max(0, gc.getCollectionTime());
+        }
+        return usage;
+    }
+
+    // The parallel loader must return the same rows, in the same order, as reading
+    // the file line by line. Small chunks force many split points.
+    private static void verifyAgainstSequential(Path dataDir) throws IOException {
+        CSVManager.loader = new ParallelCsvLoader(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        List<Patient> patients = CSVManager.loadPatients();
+        List<String[]> expected = readSequential(dataDir.resolve("patients.csv"));
+        boolean same = patients.size() == expected.size();
+        for (int i = 0; same && i < patients.size(); i++) {
+            Patient p = patients.get(i);
+            String[] row = expected.get(i);
+            same = p.getPatientId().equals(row[0]) && p.getName().equals(row[1]) && p.getMobile().equals(row[2])
+                && p.getEmail().equals(row[3]) && p.getCity().equals(row[4]) && p.getAge() == Integer.parseInt(row[5])
+                && p.getMedicalHistory().equals(row[6]);
+        }
+
+        Map<String, Doctor> doctorsById = CSVManager.indexDoctorsById(CSVManager.loadDoctors());
+        List<Appointment> appointments = CSVManager.loadAppointments(doctorsById, CSVManager.indexPatientsById(patients));
+        List<String[]> expectedAppointments = readSequential(dataDir.resolve("appointments.csv"));
+        same &= appointments.size() == expectedAppointments.size();
+        for (int i = 0; same && i < appointments.size(); i++) {
+            Appointment a = appointments.get(i);
+            String[] row = expectedAppointments.get(i);
+            same = a.getAppointmentId().equals(row[0]) && a.getPatient().getPatientId().equals(row[1])
+                && a.getDoctor().getDoctorId().equals(row[3]) && a.getTimeSlot().equals(row[6]);
+        }
+        if (!same) {
+            throw new IllegalStateException("Parallel loader differs from a line-by-line read");
+        }
+    }
+
+    private static List<String[]> readSequential(Path file) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line = reader.readLine(); // Skip header
+            while ((line = reader.readLine()) != null) {
+                rows.add(CSVManager.parseCSVLine(line));
+            }
+        }
+        return rows;
+    }
+
+    private static long load() {
+        long start = System.nanoTime();
+        List<Doctor> doctors = CSVManager.loadDoctors();
+        List<Patient> patients = CSVManager.loadPatients();
+        Map<String, Doctor> doctorsById = CSVManager.indexDoctorsById(doctors);
+        Map<String, Patient> patientsById = CSVManager.indexPatientsById(patients);
+        List<Appointment> appointments = CSVManager.loadAppointments(doctorsById, patientsById);
+        CSVManager.loadCancellations(doctorsById, patientsById);
+        long elapsed = System.nanoTime() - start;
+        if (appointments.isEmpty()) {
+            throw new IllegalStateException("Benchmark dataset did not load");
+        }
+        return elapsed;
+    }
+
+    private static void writeDataset(Path dataDir, int appointments) throws IOException {
+        int doctors = (appointments + SLOTS_PER_DOCTOR - 1) / SLOTS_PER_DOCTOR;
+        int patients = Math.max(1, appointments / 2);
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(dataDir.resolve("doctors.csv").toFile())))) {
+            writer.println("DoctorID,RegistrationNumber,Name,Specialization,ConsultationFee,AvailableTimeSlots");
+            StringBuilder slots = new StringBuilder();
+            for (int s = 0; s < SLOTS_PER_DOCTOR; s++) {
+                if (s > 0) {
+                    slots.append(';');
+                }
+                slots.append(slotLabel(s));
+            }
+            for (int d = 1; d <= doctors; d++) {
+                writer.printf("DOC%07d,REG%07d,Doctor %d,Cardiology,2500.00,\"%s\"%n", d, d, d, slots);
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(dataDir.resolve("patients.csv").toFile())))) {
+            writer.println("PatientID,Name,Mobile,Email,City,Age,MedicalHistory");
+            for (int p = 1; p <= patients; p++) {
+                writer.printf("PAT%07d,Patient %d,07%08d,patient%d@example.com,Colombo,%d,None%n", p, p, p, p, 20 + p % 60);
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(dataDir.resolve("appointments.csv").toFile())))) {
+            writer.println("AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee");
+            for (int a = 0; a < appointments; a++) {
+                int doctor = a / SLOTS_PER_DOCTOR + 1;
+                int patient = a % patients + 1;
+                writer.printf("APT%07d,PAT%07d,Patient %d,DOC%07d,Doctor %d,Cardiology,%s,2500.00%n",
+                    a + 1, patient, patient, doctor, doctor, slotLabel(a % SLOTS_PER_DOCTOR));
+            }
+        }
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(dataDir.resolve("cancellations.csv").toFile()))) {
+            writer.println("CancellationID,AppointmentID,PatientID,PatientName,DoctorID,DoctorName,DoctorSpecialization,TimeSlot,ConsultationFee,CancellationOrder");
+        }
+    }
+
+    // Five-minute slots starting at 08:00AM, e.g. "08:05AM"
+    static String slotLabel(int index) {
+        int minutes = 8 * 60 + index * 5;
+        int hour = minutes / 60;
+        String suffix = hour >= 12 ? "PM" : "AM";
+        int displayHour = hour % 12 == 0 ? 12 : hour % 12;
+        return String.format("%02d:%02d%s", displayHour, minutes % 60, suffix);
+    }
+}